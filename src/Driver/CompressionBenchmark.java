@@ -0,0 +1,111 @@
+package Driver;
+
+import GlooKit.GlooAPI.BlockCompressor;
+import GlooKit.GlooAPI.Worker;
+import de.matthiasmann.twl.utils.PNGDecoder;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs the BlockCompressor over every .png under assets/ (ColorSheet.png among them), reporting how long BC1 and BC3
+ * take on one thread and on the ThreadPool, how much smaller the result is than RGBA, and how close it decompresses to
+ * the original (as PSNR in dB over the color channels of every pixel that is not fully transparent, and over alpha
+ * for BC3). No window or GPU is needed.
+ *
+ * BC1 is reported even for images with transparency, where it would not be used, since it shows the color error alone.
+ *
+ * Usage: CompressionBenchmark [runs]
+ * */
+public class CompressionBenchmark {
+
+    private static final int WARMUP = 2;
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Worker pool = new Worker();
+
+        List<Path> files = new ArrayList<>();
+        try(Stream<Path> paths = Files.walk(Paths.get("assets"))){
+            for(Path path : (Iterable<Path>)paths.sorted()::iterator){
+                if(Files.isRegularFile(path) && path.toString().endsWith(".png")){
+                    files.add(path);
+                }
+            }
+        }
+
+        System.out.println(String.format("%-28s %11s %6s %10s %10s %7s %9s %9s",
+                "image", "size", "format", "ms", "pool ms", "ratio", "rgb dB", "alpha dB"));
+        for(Path file : files){
+            int width;
+            int height;
+            ByteBuffer rgba;
+            try(InputStream in = new FileInputStream(file.toFile())){
+                PNGDecoder decoder = new PNGDecoder(in);
+                width = decoder.getWidth();
+                height = decoder.getHeight();
+                rgba = ByteBuffer.allocateDirect(4 * width * height);
+                decoder.decode(rgba, 4 * width, PNGDecoder.Format.RGBA);
+                rgba.flip();
+            }
+
+            for(int format : new int[]{BlockCompressor.BC1, BlockCompressor.BC3}){
+                ByteBuffer blocks = null;
+                long[] single = new long[runs];
+                long[] parallel = new long[runs];
+                for(int r = -WARMUP; r < runs; r++){
+                    long start = System.nanoTime();
+                    blocks = BlockCompressor.compress(rgba, width, height, format, null);
+                    long middle = System.nanoTime();
+                    BlockCompressor.compress(rgba, width, height, format, pool);
+                    if(r >= 0){
+                        single[r] = middle - start;
+                        parallel[r] = System.nanoTime() - middle;
+                    }
+                }
+                Arrays.sort(single);
+                Arrays.sort(parallel);
+
+                ByteBuffer back = BlockCompressor.decompress(blocks, width, height, format);
+                System.out.println(String.format("%-28s %11s %6s %10.2f %10.2f %6.1fx %9.2f %9s",
+                        file.getFileName(),
+                        width + "x" + height,
+                        format == BlockCompressor.BC1 ? "BC1" : "BC3",
+                        single[runs / 2] / 1000000.0, // the median
+                        parallel[runs / 2] / 1000000.0,
+                        4.0 * width * height / blocks.capacity(),
+                        psnr(rgba, back, 0, 3),
+                        format == BlockCompressor.BC3 ? String.format("%.2f", psnr(rgba, back, 3, 1)) : "-"));
+            }
+        }
+        pool.destroy();
+    }
+
+    /**
+     * @return the peak signal to noise ratio (in dB) of count channels starting at channel first, or infinity if they
+     * are identical. The color channels of fully transparent pixels never show, so they are left out
+     * */
+    private static double psnr(ByteBuffer original, ByteBuffer decoded, int first, int count){
+        double error = 0;
+        long samples = 0;
+        for(int i = 0; i < original.limit(); i += 4){
+            if(first < 3 && original.get(i + 3) == 0){
+                continue;
+            }
+            for(int c = first; c < first + count; c++){
+                int difference = (original.get(i + c) & 0xFF) - (decoded.get(i + c) & 0xFF);
+                error += difference * difference;
+                samples += 1;
+            }
+        }
+        return error == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255.0 * 255.0 / (error / samples));
+    }
+}
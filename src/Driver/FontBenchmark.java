@@ -0,0 +1,151 @@
+package Driver;
+
+import GlooKit.GlooAPI.GlooFontFamily;
+import GlooKit.GlooAPI.TextureAtlas;
+import GlooKit.GlooAPI.Worker;
+import org.lwjgl.BufferUtils;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static GlooKit.GlooAPI.GlooFontFamily.STANDARD_TEXT_SET;
+
+/**
+ * Loads every .ttf under assets/fonts, reporting how long each takes to load into a TextureAtlas. No window or GPU
+ * is needed.
+ *
+ *     before     the way GlooCharacter loaded glyphs: one at a time, each drawn into a new image of its own and copied
+ *                out through getRGB a byte at a time, then added to the atlas on its own
+ *     1 thread   GlooFontFamily on a ThreadPool of one thread (the scratch images and the bulk insertion alone)
+ *     pool       GlooFontFamily on a full ThreadPool
+ *     1 channel  GlooFontFamily on a full ThreadPool, into a single channel atlas (as TextBatch loads fonts), whose
+ *                glyphs are a quarter of the bytes
+ *
+ * Each font is loaded with the STANDARD_TEXT_SET, and with every character it can display in the Basic Multilingual
+ * Plane (what the COMPLETE_TEXT_SET used to load up front), and the median of the runs is reported.
+ *
+ * Usage: FontBenchmark [runs]
+ * */
+public class FontBenchmark {
+
+    private static final int WARMUP = 2;
+    private static final float SIZE = 72; // the size TextBatch adds fonts at by default
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Worker single = new Worker(1);
+        Worker pool = new Worker();
+
+        List<Path> files = new ArrayList<>();
+        try(Stream<Path> paths = Files.walk(Paths.get("assets/fonts"))){
+            for(Path path : (Iterable<Path>)paths.sorted()::iterator){
+                if(Files.isRegularFile(path) && path.toString().endsWith(".ttf")){
+                    files.add(path);
+                }
+            }
+        }
+
+        System.out.println(String.format("%-30s %8s %8s %10s %10s %10s %10s %8s",
+                "font", "set", "glyphs", "before ms", "1 thread ms", "pool ms", "1 chan ms", "speedup"));
+        double[] totals = new double[4];
+        for(Path file : files){
+            Font font;
+            try(InputStream in = new FileInputStream(file.toFile())){
+                font = Font.createFont(Font.TRUETYPE_FONT, in);
+            }
+            StringBuilder every = new StringBuilder();
+            for(int c = 0; c < 0x10000; c++){
+                if(!Character.isSurrogate((char)c) && font.canDisplay(c)){
+                    every.append((char)c);
+                }
+            }
+
+            for(String set : new String[]{STANDARD_TEXT_SET, every.toString()}){
+                String path = file.toString();
+                double before = time(runs, () -> loadBefore(path, set));
+                double one = time(runs, () -> new GlooFontFamily(new TextureAtlas(single), SIZE, "bench", path, set));
+                double all = time(runs, () -> new GlooFontFamily(new TextureAtlas(pool), SIZE, "bench", path, set));
+                double channel = time(runs, () -> {
+                    TextureAtlas atlas = new TextureAtlas(pool);
+                    atlas.setSingleChannel(true);
+                    new GlooFontFamily(atlas, SIZE, "bench", path, set);
+                });
+                totals[0] += before;
+                totals[1] += one;
+                totals[2] += all;
+                totals[3] += channel;
+                System.out.println(String.format("%-30s %8s %8d %10.2f %10.2f %10.2f %10.2f %7.1fx", file.getFileName(),
+                        set == STANDARD_TEXT_SET ? "standard" : "every", set.length(), before, one, all, channel, before / channel));
+            }
+        }
+        System.out.println(String.format("%-30s %8s %8s %10.2f %10.2f %10.2f %10.2f %7.1fx", "total", "", "",
+                totals[0], totals[1], totals[2], totals[3], totals[0] / totals[3]));
+
+        single.destroy();
+        pool.destroy();
+    }
+
+    /** @return the median time the body takes, in milliseconds */
+    private static double time(int runs, Runnable body){
+        for(int r = 0; r < WARMUP; r++){
+            body.run();
+        }
+        long[] times = new long[runs];
+        for(int r = 0; r < runs; r++){
+            long start = System.nanoTime();
+            body.run();
+            times[r] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[runs / 2] / 1000000.0;
+    }
+
+    /** Loads a font the way GlooFontFamily and GlooCharacter did before glyphs were rasterized in parallel */
+    private static void loadBefore(String path, String set){
+        try(InputStream in = new FileInputStream(path)){
+            Font font = Font.createFont(Font.TRUETYPE_FONT, in).deriveFont(SIZE * 1.66f);
+            FontRenderContext fontRenderContext = new FontRenderContext(null, true, false);
+            TextureAtlas atlas = new TextureAtlas((Worker)null);
+            for(char ch : set.toCharArray()){
+                GlyphVector glyphVector = font.createGlyphVector(fontRenderContext, new char[]{ch});
+                font.getLineMetrics(String.valueOf(ch), fontRenderContext);
+                Rectangle bounds = glyphVector.getOutline().getBounds();
+                int width = Math.max(bounds.width, 1);
+                int height = Math.max(bounds.height, 1);
+
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+                Graphics2D graphics2D = image.createGraphics();
+                graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                graphics2D.setFont(font);
+                graphics2D.drawGlyphVector(glyphVector, -bounds.x, -bounds.y);
+
+                int[] pixels = new int[width * height];
+                image.getRGB(0, 0, width, height, pixels, 0, width);
+                ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
+                for(int pixel : pixels){
+                    buffer.put((byte) ((pixel >> 16) & 0xFF));
+                    buffer.put((byte) ((pixel >>  8) & 0xFF));
+                    buffer.put((byte) ((pixel >>  0) & 0xFF));
+                    buffer.put((byte) ((pixel >> 24) & 0xFF));
+                }
+                buffer.flip();
+                atlas.addTexture(buffer, width, height);
+            }
+        } catch(Exception e){
+            e.printStackTrace();
+            System.exit(400);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package Driver;
 
 import GlooKit.GlooAPI.GlooBatch;
 import GlooKit.GlooAPI.Texture;
+import GlooKit.GlooAPI.TextureLoad;
 import GlooKit.GlooFramework.*;
 import GlooKit.GlooFramework.Components.Label;
 import GlooKit.GlooFramework.Components.Rect;
@@ -16,14 +17,18 @@ public class LauncherMenu {
 
         GlooBatch defaultBatch;
         defaultBatch = app.getBatch(DEFAULT);
-        defaultBatch.addTexture("assets");
-        defaultBatch.bindTextures();
+        TextureLoad assets = defaultBatch.loadTexture("assets"); // decodes in the background while the fonts load
+        defaultBatch.setRetained(true); // the launcher hardly ever changes, so keep its geometry on the GPU
 
         TextBatch textBatch;
         textBatch = (TextBatch) app.getBatch(TEXT);
         textBatch.addFont("assets/fonts", STANDARD_TEXT_SET, 72);
         textBatch.getFontFamilies().forEach(System.out::println);
         textBatch.bindTextures();
+        textBatch.setRetained(true);
+
+        assets.await();
+        defaultBatch.bindTextures();
 
         Texture blue       = defaultBatch.getTexture("Blue");
         Texture fullscreen = defaultBatch.getTexture("fullscreen");
@@ -20,6 +20,7 @@ public class MainMenu {
         batch = app.getBatch(DEFAULT);
         batch.addTexture("Assets");
         batch.bindTextures();
+        batch.setRetained(true); // only the morpher changes each frame, so only it gets re-uploaded
 
         Texture blue          = batch.getTexture("Blue");
         Texture physicsButton = batch.getTexture("Physics-Button");
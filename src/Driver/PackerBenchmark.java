@@ -0,0 +1,199 @@
+package Driver;
+
+import GlooKit.GlooAPI.GlooFontFamily;
+import GlooKit.GlooAPI.MaxRectsPacker;
+import GlooKit.GlooAPI.ShelfPacker;
+import GlooKit.GlooAPI.SkylinePacker;
+import GlooKit.GlooAPI.TexturePacker;
+import de.matthiasmann.twl.utils.PNGDecoder;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Compares the TexturePackers on the kinds of texture sets TextureAtlases actually hold, reporting how long each
+ * takes to pack and how much of its atlas it fills. No window or GPU is needed.
+ *
+ * The sets are
+ *     assets       the sizes of every .png under assets/
+ *     fonts        the glyph sizes of every font under assets/fonts/, as GlooFontFamily would rasterize them
+ *     glyphs N     N synthetic glyph sized rectangles (seeded, so every run packs the same set)
+ *     mixed        the assets together with two thousand synthetic glyphs
+ *
+ * Every packing is also checked for overlapping or out of bounds textures.
+ *
+ * Usage: PackerBenchmark [runs]
+ * */
+public class PackerBenchmark {
+
+    private static final int WARMUP = 5;
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 25;
+
+        TexturePacker[] packers = {new ShelfPacker(), new SkylinePacker(), new MaxRectsPacker()};
+
+        List<String> names = new ArrayList<>();
+        List<int[][]> sets = new ArrayList<>();
+        int[][] assets = pngSizes("assets");
+        names.add("assets");
+        sets.add(assets);
+        names.add("fonts");
+        sets.add(glyphSizes("assets/fonts"));
+        for(int n : new int[]{100, 1000, 5000}){
+            names.add("glyphs " + n);
+            sets.add(syntheticGlyphs(n, 42));
+        }
+        names.add("mixed");
+        sets.add(concat(assets, syntheticGlyphs(2000, 7)));
+
+        System.out.println(String.format("%-14s %-16s %7s %12s %10s %10s", "set", "packer", "count", "atlas", "occupancy", "ms"));
+        for(int s = 0; s < sets.size(); s++){
+            int[] widths = sets.get(s)[0];
+            int[] heights = sets.get(s)[1];
+            long area = 0;
+            for(int i = 0; i < widths.length; i++){
+                area += (long)widths[i] * heights[i];
+            }
+            for(TexturePacker packer : packers){
+                int[] x = new int[widths.length];
+                int[] y = new int[widths.length];
+                int[] size = null;
+                long[] times = new long[runs];
+                for(int r = -WARMUP; r < runs; r++){
+                    long start = System.nanoTime();
+                    size = packer.pack(widths, heights, x, y);
+                    if(r >= 0){
+                        times[r] = System.nanoTime() - start;
+                    }
+                }
+                Arrays.sort(times);
+                String problem = validate(widths, heights, x, y, size);
+                System.out.println(String.format("%-14s %-16s %7d %12s %9.1f%% %10.3f%s",
+                        names.get(s),
+                        packer.getClass().getSimpleName(),
+                        widths.length,
+                        size[0] + "x" + size[1],
+                        100.0 * area / ((long)size[0] * size[1]),
+                        times[runs / 2] / 1000000.0, // the median
+                        problem == null ? "" : "  INVALID: " + problem));
+            }
+        }
+    }
+
+    /** @return null if every rectangle lies inside the atlas and none overlap, or else what went wrong */
+    private static String validate(int[] widths, int[] heights, int[] x, int[] y, int[] size){
+        int n = widths.length;
+        for(int i = 0; i < n; i++){
+            if(widths[i] == 0 || heights[i] == 0){
+                continue;
+            }
+            if(x[i] < 0 || y[i] < 0 || x[i] + widths[i] > size[0] || y[i] + heights[i] > size[1]){
+                return "rectangle " + i + " is out of bounds";
+            }
+        }
+        // sweep by row so that only rectangles whose rows overlap get compared
+        Integer[] order = new Integer[n];
+        for(int i = 0; i < n; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(y[a], y[b]));
+        for(int a = 0; a < n; a++){
+            int i = order[a];
+            if(widths[i] == 0 || heights[i] == 0){
+                continue;
+            }
+            for(int b = a + 1; b < n && y[order[b]] < y[i] + heights[i]; b++){
+                int j = order[b];
+                if(widths[j] != 0 && heights[j] != 0 && x[j] < x[i] + widths[i] && x[i] < x[j] + widths[j]){
+                    return "rectangles " + i + " and " + j + " overlap";
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Reads just the headers of every .png under a directory */
+    private static int[][] pngSizes(String directory) throws Exception {
+        List<int[]> sizes = new ArrayList<>();
+        try(Stream<Path> paths = Files.walk(Paths.get(directory))){
+            for(Path path : (Iterable<Path>)paths.sorted()::iterator){
+                if(Files.isRegularFile(path) && path.toString().endsWith(".png")){
+                    try(InputStream in = new FileInputStream(path.toFile())){
+                        PNGDecoder decoder = new PNGDecoder(in);
+                        sizes.add(new int[]{decoder.getWidth(), decoder.getHeight()});
+                    }
+                }
+            }
+        }
+        return unzip(sizes);
+    }
+
+    /** Measures the glyphs of every font under a directory the same way GlooCharacter does */
+    private static int[][] glyphSizes(String directory) throws Exception {
+        List<int[]> sizes = new ArrayList<>();
+        FontRenderContext context = new FontRenderContext(null, true, false);
+        try(Stream<Path> paths = Files.walk(Paths.get(directory))){
+            for(Path path : (Iterable<Path>)paths.sorted()::iterator){
+                if(!Files.isRegularFile(path) || !path.toString().endsWith(".ttf")){
+                    continue;
+                }
+                Font font;
+                try(InputStream in = new FileInputStream(path.toFile())){
+                    font = Font.createFont(Font.TRUETYPE_FONT, in).deriveFont(72 * 1.66f);
+                }
+                for(char ch : GlooFontFamily.STANDARD_TEXT_SET.toCharArray()){
+                    Rectangle bounds = font.createGlyphVector(context, new char[]{ch}).getGlyphOutline(0).getBounds();
+                    sizes.add(new int[]{Math.max(0, bounds.width), Math.max(0, bounds.height)});
+                }
+            }
+        }
+        return unzip(sizes);
+    }
+
+    /** Makes n rectangles shaped like glyphs from a handful of point sizes: mostly taller than wide, a few tiny */
+    private static int[][] syntheticGlyphs(int n, long seed){
+        Random random = new Random(seed);
+        int[] pointSizes = {12, 18, 24, 36, 48, 72};
+        int[][] set = new int[2][n];
+        for(int i = 0; i < n; i++){
+            int size = pointSizes[random.nextInt(pointSizes.length)];
+            if(random.nextInt(10) == 0){ // punctuation
+                set[0][i] = 1 + random.nextInt(Math.max(1, size / 4));
+                set[1][i] = 1 + random.nextInt(Math.max(1, size / 3));
+            } else {
+                set[0][i] = size / 3 + random.nextInt(size / 2);
+                set[1][i] = size / 2 + random.nextInt(size / 2);
+            }
+        }
+        return set;
+    }
+
+    private static int[][] concat(int[][] a, int[][] b){
+        int[][] set = new int[2][];
+        for(int k = 0; k < 2; k++){
+            set[k] = Arrays.copyOf(a[k], a[k].length + b[k].length);
+            System.arraycopy(b[k], 0, set[k], a[k].length, b[k].length);
+        }
+        return set;
+    }
+
+    private static int[][] unzip(List<int[]> sizes){
+        int[][] set = new int[2][sizes.size()];
+        for(int i = 0; i < sizes.size(); i++){
+            set[0][i] = sizes.get(i)[0];
+            set[1][i] = sizes.get(i)[1];
+        }
+        return set;
+    }
+}
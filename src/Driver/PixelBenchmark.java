@@ -0,0 +1,113 @@
+package Driver;
+
+import GlooKit.GlooAPI.Pixels;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the bulk pixel operations in Pixels with the byte at a time loops Texture and TextureAtlas used before them,
+ * on a large atlas. No window or GPU is needed.
+ *
+ *     alpha scan   looking for a pixel with alpha below 255 in an opaque image (the worst case, since the scan cannot
+ *                  stop early) and in one whose only transparent pixel is the last, at 512x512 (a texture, which is
+ *                  still in cache when it is scanned, just after decoding) and at 4096x4096 (bound by memory)
+ *     compose      copying textures of a few sizes, row by row, into a 4096x4096 atlas, as composeTextures does
+ *
+ * Each is run on one thread, and the median of the runs is reported along with the throughput.
+ *
+ * Usage: PixelBenchmark [runs]
+ * */
+public class PixelBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final long WARMUP_NANOS = 500000000L; // short bodies are warmed up for at least this long, so the JIT settles
+    private static final int SIZE = 4096;
+
+    public static void main(String[] args){
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        int pixels = SIZE * SIZE;
+
+        System.out.println(String.format("%-40s %10s %10s %10s", "operation", "ms", "GB/s", "result"));
+        for(int side : new int[]{512, SIZE}){
+            int count = side * side;
+            ByteBuffer opaque = ByteBuffer.allocateDirect(4 * count);
+            for(int i = 0; i < 4 * count; i++){
+                opaque.put(i, (byte)(i % 4 == 3 ? 255 : i * 31));
+            }
+            ByteBuffer lastPixel = ByteBuffer.allocateDirect(4 * count);
+            lastPixel.put(opaque.duplicate());
+            lastPixel.put(4 * count - 1, (byte)128);
+
+            for(ByteBuffer image : new ByteBuffer[]{opaque, lastPixel}){
+                String name = side + " " + (image == opaque ? "opaque" : "last pixel");
+                boolean[] result = new boolean[1];
+                report("alpha scan, byte at a time, " + name, runs, 4L * count, () -> result[0] = scanBytes(image, count), result);
+                report("alpha scan, Pixels, " + name, runs, 4L * count, () -> result[0] = Pixels.hasAlpha(image, count), result);
+            }
+        }
+
+        // textures of a few sizes, laid out in rows across the atlas
+        int[] sizes = {16, 32, 64, 256, 1024};
+        for(int size : sizes){
+            ByteBuffer texture = ByteBuffer.allocateDirect(4 * size * size);
+            new Random(size).ints(size * size).forEach(texture::putInt);
+            ByteBuffer atlas = ByteBuffer.allocateDirect(4 * pixels);
+            int count = (SIZE / size) * (SIZE / size);
+            long bytes = 4L * size * size * count;
+            report("compose " + count + " of " + size + "x" + size + ", byte[]", runs, bytes, () -> {
+                for(int k = 0; k < count; k++){
+                    int to = 4 * ((k / (SIZE / size)) * size * SIZE + (k % (SIZE / size)) * size);
+                    copyThroughArray(texture, size, size, atlas, to);
+                }
+            }, null);
+            report("compose " + count + " of " + size + "x" + size + ", Pixels", runs, bytes, () -> {
+                for(int k = 0; k < count; k++){
+                    int to = 4 * ((k / (SIZE / size)) * size * SIZE + (k % (SIZE / size)) * size);
+                    Pixels.copy(texture, 0, 4 * size, atlas, to, 4 * SIZE, size, size);
+                }
+            }, null);
+        }
+    }
+
+    private static void report(String name, int runs, long bytes, Runnable body, boolean[] result){
+        long warm = System.nanoTime();
+        for(int r = 0; r < WARMUP || System.nanoTime() - warm < WARMUP_NANOS; r++){
+            body.run();
+        }
+        long[] times = new long[runs];
+        for(int r = 0; r < runs; r++){
+            long start = System.nanoTime();
+            body.run();
+            times[r] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        long median = times[runs / 2];
+        System.out.println(String.format("%-40s %10.3f %10.2f %10s", name, median / 1000000.0, bytes / (double)median,
+                result == null ? "" : String.valueOf(result[0])));
+    }
+
+    /** The alpha scan Texture used to do */
+    private static boolean scanBytes(ByteBuffer buffer, int pixels){
+        for(int i = 3; i < 4 * pixels; i += 4){
+            if(buffer.get(i) != (byte)255){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The row copy composeTextures used to do, through a byte[] for every row */
+    private static void copyThroughArray(ByteBuffer texture, int width, int height, ByteBuffer atlas, int to){
+        ByteBuffer tBuffer = texture.duplicate();
+        ByteBuffer dBuffer = atlas.duplicate();
+        byte[] rowOfBytes = new byte[4 * width];
+        for(int i = 0; i < height; i++){
+            tBuffer.position(4 * i * width);
+            tBuffer.get(rowOfBytes, 0, 4 * width);
+            dBuffer.position(to + 4 * i * SIZE);
+            dBuffer.put(rowOfBytes, 0, 4 * width);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package GlooKit.GlooAPI;
+
+/**
+ * An AdaptivePackingPolicy picks the number of packing threads from a cost model it learns while the scene runs.
+ * @see PackingPolicy
+ *
+ * The model is
+ *
+ *      time(threads) = fanOut * (threads - 1) + perFloat * floats / threads
+ *
+ * where perFloat is the cost of packing one vertex float and fanOut is the cost of bringing one more thread in (waking
+ * it, handing it a slice, and waiting on the slowest slice; the frame is one draw call however many slices there are).
+ * The time is smallest at
+ *
+ *      threads = sqrt(perFloat * floats / fanOut)
+ *
+ * which is then clamped so that no slice has fewer than MINIMUM_GRAIN floats to pack. Both costs start from rough
+ * guesses and are refined every frame from the measured packing times, as moving averages so one slow frame (a garbage
+ * collection, say) does not throw the model off.
+ * */
+public class AdaptivePackingPolicy implements PackingPolicy {
+
+    /** The fewest floats a slice is worth fanning out for */
+    public static final int MINIMUM_GRAIN = 1 << 14;
+    /** How much weight each new measurement carries in the moving averages */
+    private static final double SMOOTHING = 0.1;
+
+    private double perFloat = 1; // nanoseconds to pack a single float
+    private double fanOut = 20000; // nanoseconds of overhead per extra thread
+
+    @Override
+    public int threads(int objects, int floats, int poolSize){
+        if(floats < 2 * MINIMUM_GRAIN){
+            return 1;
+        }
+        int threads = (int)Math.round(Math.sqrt(perFloat * floats / fanOut));
+        threads = Math.min(threads, floats / MINIMUM_GRAIN);
+        threads = Math.min(threads, poolSize + 1);
+        return Math.max(threads, 1);
+    }
+
+    @Override
+    public void measured(int threads, int floats, long wallNanos, long workNanos){
+        if(floats <= 0){
+            return;
+        }
+        perFloat += SMOOTHING * ((double)workNanos / floats - perFloat);
+        if(threads > 1){
+            // whatever the wall time exceeds a perfect split by is the price of the extra threads
+            double overhead = Math.max(0, wallNanos - (double)workNanos / threads) / (threads - 1);
+            fanOut += SMOOTHING * (overhead - fanOut);
+            fanOut = Math.max(fanOut, 1);
+        }
+    }
+
+    /** @return the current estimate of the cost of packing one float, in nanoseconds */
+    public double perFloat(){
+        return perFloat;
+
+    }
+
+    /** @return the current estimate of the cost of each extra packing thread, in nanoseconds */
+    public double fanOut(){
+        return fanOut;
+
+    }
+}
@@ -0,0 +1,211 @@
+package GlooKit.GlooAPI;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * An AtlasCache is a packed TextureAtlas saved to disk, so that the next launch can skip decoding and packing its
+ * Textures and upload the atlas straight from the file. @see TextureAtlas#setCached(boolean)
+ *
+ * A cache file sits next to the application's .cfg file, and is named after the application and the set of files in
+ * the atlas. It holds the size, offset, layer and transparency of every Texture, along with the modification time and
+ * size of the file each one came from, followed by the RGBA pixels of the whole atlas (or, for a compressed atlas, its
+ * blocks, every mipmap level of them). A cache is only used if every one of those files is unchanged, and if it was
+ * packed with the same TexturePacker, page size, incremental setting, compression and premultiplication as the atlas
+ * has now; otherwise the atlas is packed as usual and the cache is written again. @see BlockCompressor
+ *
+ * The pixels are memory mapped rather than read, so the upload reads them straight out of the file.
+ *
+ * Only atlases made entirely of Textures from files can be cached (glyphs are rasterized, not loaded), and not while
+ * a streamed Texture is still on its way in.
+ * */
+final class AtlasCache {
+
+    private static final int MAGIC = 0x474C4154; // "GLAT"
+    private static final int VERSION = 3;
+
+    private final Path file;
+
+    /** What a cache file says about an atlas */
+    static final class Layout {
+        int atlasW;
+        int atlasH;
+        int layers;
+        int format; // the BlockCompressor format of the pixels, or 0 for RGBA
+        boolean premultiplied; // whether the color of the pixels is multiplied by their alpha
+        int[] widths;
+        int[] heights;
+        int[] x;
+        int[] y;
+        int[] layer;
+        boolean[] alpha;
+        ByteBuffer pixels; // mapped from the file
+    }
+
+    private AtlasCache(Path file){
+        this.file = file;
+
+    }
+
+    /**
+     * @param name the name of the application (whose .cfg file the cache sits beside)
+     * @param textures the Textures of the atlas, in order
+     * @return the cache for an atlas of these Textures, or null if the atlas cannot be cached
+     * */
+    static AtlasCache of(String name, List<Texture> textures){
+        int hash = 1;
+        for(int i = 1; i < textures.size(); i++){ // the first texture is the "null" texture, which every atlas has
+            String path = textures.get(i).path();
+            if(path == null || textures.get(i).isStreaming()){
+                return null;
+            }
+            hash = 31 * hash + path.hashCode();
+        }
+        return new AtlasCache(Paths.get(name + "-" + Integer.toHexString(hash) + ".atlas"));
+    }
+
+    /**
+     * Maps the cache file, if there is one and it still describes these Textures
+     *
+     * @return the Layout in the cache, or null if there is no usable cache
+     * */
+    Layout read(String packer, int pageSize, boolean incremental, boolean compressed, boolean premultiplied, List<Texture> textures){
+        Path file = CacheFile.latest(this.file);
+        if(file == null){
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(mapped.getInt() != MAGIC || mapped.getInt() != VERSION){
+                return null;
+            }
+            if(!getString(mapped).equals(packer) || mapped.getInt() != pageSize || (mapped.get() == 1) != incremental){
+                return null;
+            }
+            int format = mapped.getInt();
+            if((format != 0) != compressed || (mapped.get() == 1) != premultiplied){
+                return null;
+            }
+            int count = mapped.getInt();
+            if(count != textures.size()){
+                return null;
+            }
+
+            Layout layout = new Layout();
+            layout.format = format;
+            layout.premultiplied = premultiplied;
+            layout.widths = new int[count];
+            layout.heights = new int[count];
+            layout.x = new int[count];
+            layout.y = new int[count];
+            layout.layer = new int[count];
+            layout.alpha = new boolean[count];
+            for(int i = 0; i < count; i++){
+                String path = getString(mapped);
+                long modified = mapped.getLong();
+                long size = mapped.getLong();
+                if(i > 0 && !(path.equals(textures.get(i).path()) && stamp(path, modified, size))){
+                    return null; // a file has been added, removed, moved or changed since the cache was written
+                }
+                layout.widths[i] = mapped.getInt();
+                layout.heights[i] = mapped.getInt();
+                layout.x[i] = mapped.getInt();
+                layout.y[i] = mapped.getInt();
+                layout.layer[i] = mapped.getInt();
+                layout.alpha[i] = mapped.get() == 1;
+            }
+
+            layout.atlasW = mapped.getInt();
+            layout.atlasH = mapped.getInt();
+            layout.layers = mapped.getInt();
+            long bytes = format == 0 ? 4L * layout.atlasW * layout.atlasH * layout.layers
+                    : BlockCompressor.size(layout.atlasW, layout.atlasH, layout.layers, format);
+            if(mapped.remaining() != bytes){
+                return null; // the file was cut short
+            }
+            layout.pixels = mapped.slice();
+            return layout;
+
+        } catch (IOException | RuntimeException e){ // a damaged file can also run past its end
+            e.printStackTrace();
+            return null; // an unreadable cache is only a missed opportunity
+        }
+    }
+
+    /**
+     * Writes the packed atlas to the cache file, as a new version of it, so that the version an atlas may still have
+     * mapped is never written over @see CacheFile
+     *
+     * @param paths the file of every Texture in the atlas (the first, the "null" texture, has none)
+     * @param layout the atlas, whose pixels must not be changed until this returns
+     * */
+    void write(String packer, int pageSize, boolean incremental, String[] paths, Layout layout){
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            putString(out, packer);
+            out.writeInt(pageSize);
+            out.writeByte(incremental ? 1 : 0);
+            out.writeInt(layout.format);
+            out.writeByte(layout.premultiplied ? 1 : 0);
+            out.writeInt(paths.length);
+            for(int i = 0; i < paths.length; i++){
+                putString(out, i == 0 ? "" : paths[i]);
+                out.writeLong(i == 0 ? 0 : Files.getLastModifiedTime(Paths.get(paths[i])).toMillis());
+                out.writeLong(i == 0 ? 0 : Files.size(Paths.get(paths[i])));
+                out.writeInt(layout.widths[i]);
+                out.writeInt(layout.heights[i]);
+                out.writeInt(layout.x[i]);
+                out.writeInt(layout.y[i]);
+                out.writeInt(layout.layer[i]);
+                out.writeByte(layout.alpha[i] ? 1 : 0);
+            }
+            out.writeInt(layout.atlasW);
+            out.writeInt(layout.atlasH);
+            out.writeInt(layout.layers);
+            out.flush();
+
+            ByteBuffer body = layout.pixels.duplicate();
+            body.clear();
+            CacheFile.write(file, ByteBuffer.wrap(bytes.toByteArray()), body);
+
+        } catch (IOException e){
+            e.printStackTrace(); // the atlas is fine without a cache; it will just be packed again next launch
+        }
+    }
+
+    /** @return true if the file at path still has the given modification time and size */
+    private static boolean stamp(String path, long modified, long size){
+        try {
+            Path p = Paths.get(path);
+            return Files.getLastModifiedTime(p).toMillis() == modified && Files.size(p) == size;
+        } catch (IOException e){
+            return false;
+        }
+    }
+
+    private static void putString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer in){
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
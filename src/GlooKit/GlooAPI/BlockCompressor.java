@@ -0,0 +1,528 @@
+package GlooKit.GlooAPI;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The BlockCompressor turns RGBA pixels into the S3TC block compressed formats GPUs sample from directly, so that a
+ * compressed TextureAtlas takes a quarter (BC3) or an eighth (BC1) of the memory and upload bandwidth of plain RGBA.
+ * @see TextureAtlas#setCompressed(boolean)
+ *
+ * Both formats split the image into 4x4 blocks. Each block stores two 16 bit (5:6:5) endpoint colors and a 2 bit
+ * index per pixel choosing the endpoints or one of the two colors a third and two thirds of the way between them.
+ *     BC1 (DXT1)  8 bytes per block: the color block alone, for fully opaque images
+ *     BC3 (DXT5)  16 bytes per block: an alpha block (two 8 bit endpoint alphas, with six alphas between them, and a
+ *                 3 bit index per pixel) before the color block
+ *
+ * The endpoints of each color block are taken along the principal axis of the block's colors (the direction in which
+ * they vary the most), pulled in slightly from the extremes so that the rounding to 5:6:5 costs less, and then refitted
+ * by least squares to the colors the pixels picked. In BC3, fully transparent pixels are left out of the color fit.
+ * Blocks at the right and bottom edges of an image whose size is not a multiple of 4 repeat the edge pixels.
+ *
+ * Nothing here touches OpenGL, so the compressor can be run (and checked, with decompress) without a GPU.
+ * */
+public final class BlockCompressor {
+
+    public static final int BC1 = 1;
+    public static final int BC3 = 3;
+
+    private BlockCompressor(){
+
+    }
+
+    /** @return the number of bytes each 4x4 block takes in format */
+    public static int blockBytes(int format){
+        return format == BC1 ? 8 : 16;
+
+    }
+
+    /** @return the number of bytes a width by height image takes in format */
+    public static long size(int width, int height, int format){
+        return (long)((width + 3) / 4) * ((height + 3) / 4) * blockBytes(format);
+
+    }
+
+    /** @return the number of bytes every mipmap level of every layer of a width by height image takes in format */
+    static long size(int width, int height, int layers, int format){
+        long total = 0;
+        for(int level = levels(width, height); level > 0; level--){
+            total += size(width, height, format) * layers;
+            width = Math.max(1, width / 2);
+            height = Math.max(1, height / 2);
+        }
+        return total;
+    }
+
+    /** @return the number of mipmap levels of a width by height image, down to 1x1 */
+    public static int levels(int width, int height){
+        int levels = 1;
+        while(width > 1 || height > 1){
+            width = Math.max(1, width / 2);
+            height = Math.max(1, height / 2);
+            levels += 1;
+        }
+        return levels;
+    }
+
+    /**
+     * Compresses an RGBA image
+     *
+     * @param rgba the pixels, 4 bytes each, row by row from position 0
+     * @param pool the ThreadPool to compress rows of blocks in parallel on, or null to compress on this thread
+     * @return the blocks, row by row, in a direct ByteBuffer
+     * */
+    public static ByteBuffer compress(ByteBuffer rgba, int width, int height, int format, Worker pool){
+        ByteBuffer blocks = ByteBuffer.allocateDirect((int)size(width, height, format));
+        compress(rgba, 0, width, height, format, blocks, 0, pool);
+        return blocks;
+    }
+
+    /**
+     * Compresses every mipmap level of every layer of an RGBA image (the layers one after another, as the pages of a
+     * paged TextureAtlas are), with each level box filtered down from the one before it
+     *
+     * @return the blocks, level by level and layer by layer within each level, as glCompressedTexImage expects them
+     * */
+    static ByteBuffer compressLevels(ByteBuffer rgba, int width, int height, int layers, int format, Worker pool){
+        int levels = levels(width, height);
+        ByteBuffer blocks = ByteBuffer.allocateDirect((int)size(width, height, layers, format));
+
+        ByteBuffer image = rgba;
+        int w = width;
+        int h = height;
+        int out = 0;
+        for(int level = 0; level < levels; level++){
+            for(int layer = 0; layer < layers; layer++){
+                compress(image, 4 * w * h * layer, w, h, format, blocks, out, pool);
+                out += size(w, h, format);
+            }
+            if(level + 1 < levels){
+                int halfW = Math.max(1, w / 2);
+                int halfH = Math.max(1, h / 2);
+                image = downsample(image, w, h, layers, halfW, halfH, pool);
+                w = halfW;
+                h = halfH;
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Averages each 2x2 square of pixels (or 2x1 or 1x2 once a side is down to one pixel) of every layer into one
+     *
+     * @return the next mipmap level of the image
+     * */
+    static ByteBuffer downsample(ByteBuffer rgba, int width, int height, int layers, int halfW, int halfH, Worker pool){
+        ByteBuffer half = ByteBuffer.allocateDirect(4 * halfW * halfH * layers);
+        int stepX = width > 1 ? 2 : 1;
+        int stepY = height > 1 ? 2 : 1;
+        run(pool, halfH * layers, (row) -> {
+            int layer = row / halfH;
+            int y = row % halfH;
+            int source = 4 * width * height * layer;
+            int target = 4 * halfW * halfH * layer;
+            for(int x = 0; x < halfW; x++){
+                for(int c = 0; c < 4; c++){
+                    int sum = 0;
+                    for(int dy = 0; dy < stepY; dy++){
+                        for(int dx = 0; dx < stepX; dx++){
+                            sum += rgba.get(source + 4 * ((stepY * y + dy) * width + stepX * x + dx) + c) & 0xFF;
+                        }
+                    }
+                    half.put(target + 4 * (y * halfW + x) + c, (byte)((sum + stepX * stepY / 2) / (stepX * stepY)));
+                }
+            }
+        });
+        return half;
+    }
+
+    /**
+     * Decompresses blocks back into RGBA pixels, exactly as the GPU would sample them
+     *
+     * @return the pixels, row by row, in a direct ByteBuffer
+     * */
+    public static ByteBuffer decompress(ByteBuffer blocks, int width, int height, int format){
+        ByteBuffer rgba = ByteBuffer.allocateDirect(4 * width * height);
+        int stride = blockBytes(format);
+        int across = (width + 3) / 4;
+        int[] colors = new int[16];
+        int[] alphas = new int[16];
+        for(int by = 0; by < (height + 3) / 4; by++){
+            for(int bx = 0; bx < across; bx++){
+                int at = (by * across + bx) * stride;
+                if(format == BC3){
+                    decodeAlpha(blocks, at, alphas);
+                    decodeColor(blocks, at + 8, false, colors);
+                } else {
+                    decodeColor(blocks, at, true, colors);
+                }
+                for(int i = 0; i < 16; i++){
+                    int x = 4 * bx + (i & 3);
+                    int y = 4 * by + (i >> 2);
+                    if(x < width && y < height){
+                        int color = colors[i];
+                        int index = 4 * (y * width + x);
+                        rgba.put(index, (byte)(color >> 16));
+                        rgba.put(index + 1, (byte)(color >> 8));
+                        rgba.put(index + 2, (byte)color);
+                        rgba.put(index + 3, (byte)(format == BC3 ? alphas[i] : color >>> 24));
+                    }
+                }
+            }
+        }
+        return rgba;
+    }
+
+    /** Compresses one image (or one layer of one) starting at byte from of rgba into blocks starting at byte to */
+    private static void compress(ByteBuffer rgba, int from, int width, int height, int format, ByteBuffer blocks, int to, Worker pool){
+        int across = (width + 3) / 4;
+        int stride = blockBytes(format);
+        run(pool, (height + 3) / 4, (by) -> {
+            int[] r = new int[16];
+            int[] g = new int[16];
+            int[] b = new int[16];
+            int[] a = new int[16];
+            ByteBuffer block = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            for(int bx = 0; bx < across; bx++){
+                for(int i = 0; i < 16; i++){
+                    int x = Math.min(4 * bx + (i & 3), width - 1); // the edge pixels repeat past the edge of the image
+                    int y = Math.min(4 * by + (i >> 2), height - 1);
+                    int index = from + 4 * (y * width + x);
+                    r[i] = rgba.get(index) & 0xFF;
+                    g[i] = rgba.get(index + 1) & 0xFF;
+                    b[i] = rgba.get(index + 2) & 0xFF;
+                    a[i] = rgba.get(index + 3) & 0xFF;
+                }
+                block.clear();
+                if(format == BC3){
+                    encodeAlpha(a, block);
+                }
+                encodeColor(r, g, b, format == BC3 ? a : null, block);
+                int at = to + (by * across + bx) * stride;
+                for(int i = 0; i < stride; i++){
+                    blocks.put(at + i, block.get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the 8 byte color block of 16 pixels (always in four color mode)
+     *
+     * @param a the alpha of each pixel, or null if the block is opaque; pixels with no alpha at all are left out of the
+     *          fit, since they never show (unless every pixel in the block is transparent)
+     * */
+    private static void encodeColor(int[] r, int[] g, int[] b, int[] a, ByteBuffer block){
+        boolean[] counts = new boolean[16];
+        int n = 0;
+        for(int i = 0; i < 16; i++){
+            counts[i] = a == null || a[i] != 0;
+            n += counts[i] ? 1 : 0;
+        }
+        if(n == 0){
+            Arrays.fill(counts, true);
+            n = 16;
+        }
+
+        // the mean and covariance of the colors
+        float mr = 0, mg = 0, mb = 0;
+        for(int i = 0; i < 16; i++){
+            if(counts[i]){
+                mr += r[i];
+                mg += g[i];
+                mb += b[i];
+            }
+        }
+        mr /= n;
+        mg /= n;
+        mb /= n;
+        float rr = 0, rg = 0, rb = 0, gg = 0, gb = 0, bb = 0;
+        for(int i = 0; i < 16; i++){
+            if(!counts[i]){
+                continue;
+            }
+            float dr = r[i] - mr;
+            float dg = g[i] - mg;
+            float db = b[i] - mb;
+            rr += dr * dr;
+            rg += dr * dg;
+            rb += dr * db;
+            gg += dg * dg;
+            gb += dg * db;
+            bb += db * db;
+        }
+
+        // the principal axis, by power iteration from the row of the covariance with the most variance (starting from
+        // a fixed vector can stall on colors whose channels vary against each other, like red against blue)
+        float vr, vg, vb;
+        if(rr >= gg && rr >= bb){
+            vr = rr;
+            vg = rg;
+            vb = rb;
+        } else if(gg >= bb){
+            vr = rg;
+            vg = gg;
+            vb = gb;
+        } else {
+            vr = rb;
+            vg = gb;
+            vb = bb;
+        }
+        for(int k = 0; k < 4; k++){
+            float nr = rr * vr + rg * vg + rb * vb;
+            float ng = rg * vr + gg * vg + gb * vb;
+            float nb = rb * vr + gb * vg + bb * vb;
+            float length = Math.max(Math.abs(nr), Math.max(Math.abs(ng), Math.abs(nb)));
+            if(length == 0){
+                break; // every pixel is the same color
+            }
+            vr = nr / length;
+            vg = ng / length;
+            vb = nb / length;
+        }
+
+        // the pixels furthest along the axis in each direction are the endpoints
+        int low = -1;
+        int high = -1;
+        float lowest = Float.MAX_VALUE;
+        float highest = -Float.MAX_VALUE;
+        for(int i = 0; i < 16; i++){
+            if(!counts[i]){
+                continue;
+            }
+            float along = r[i] * vr + g[i] * vg + b[i] * vb;
+            if(along < lowest){
+                lowest = along;
+                low = i;
+            }
+            if(along > highest){
+                highest = along;
+                high = i;
+            }
+        }
+
+        // pulled in by 1/16 of the range, since the extremes are rarely worth an endpoint to themselves
+        int c0 = pack565(inset(r[high], r[low]), inset(g[high], g[low]), inset(b[high], b[low]));
+        int c1 = pack565(inset(r[low], r[high]), inset(g[low], g[high]), inset(b[low], b[high]));
+        int[] indices = new int[16];
+        long error = match(c0, c1, r, g, b, counts, indices);
+
+        // then refitted by least squares to the palette entries the pixels chose, which is kept if it does better
+        float aa = 0, ab = 0, bbw = 0;
+        float[] x = new float[3];
+        float[] y = new float[3];
+        for(int i = 0; i < 16; i++){
+            if(!counts[i]){
+                continue;
+            }
+            float t = WEIGHTS[indices[i]];
+            aa += t * t;
+            ab += t * (1 - t);
+            bbw += (1 - t) * (1 - t);
+            x[0] += t * r[i];
+            x[1] += t * g[i];
+            x[2] += t * b[i];
+            y[0] += (1 - t) * r[i];
+            y[1] += (1 - t) * g[i];
+            y[2] += (1 - t) * b[i];
+        }
+        float determinant = aa * bbw - ab * ab;
+        if(Math.abs(determinant) > 1e-6f){
+            int[] e0 = new int[3];
+            int[] e1 = new int[3];
+            for(int c = 0; c < 3; c++){
+                e0[c] = clamp(Math.round((bbw * x[c] - ab * y[c]) / determinant));
+                e1[c] = clamp(Math.round((aa * y[c] - ab * x[c]) / determinant));
+            }
+            int d0 = pack565(e0[0], e0[1], e0[2]);
+            int d1 = pack565(e1[0], e1[1], e1[2]);
+            int[] refined = new int[16];
+            long refinedError = match(d0, d1, r, g, b, counts, refined);
+            if(refinedError < error){
+                c0 = d0;
+                c1 = d1;
+                indices = refined;
+            }
+        }
+
+        if(c0 < c1){ // color0 must be the larger for four color mode, which swaps the palette around
+            int swap = c0;
+            c0 = c1;
+            c1 = swap;
+            for(int i = 0; i < 16; i++){
+                indices[i] ^= 1;
+            }
+        }
+        int bits = 0;
+        for(int i = 15; i >= 0; i--){
+            bits = (bits << 2) | (c0 == c1 ? 0 : indices[i]); // with equal endpoints three color mode would make index 3 transparent
+        }
+
+        block.putShort((short)c0);
+        block.putShort((short)c1);
+        block.putInt(bits);
+    }
+
+    // how much of color0 each palette entry of a four color block has
+    private static final float[] WEIGHTS = {1, 0, 2 / 3f, 1 / 3f};
+
+    /**
+     * Chooses the closest of the four colors between two endpoints for every pixel
+     *
+     * @return the summed squared error of the pixels that count
+     * */
+    private static long match(int c0, int c1, int[] r, int[] g, int[] b, boolean[] counts, int[] indices){
+        int[] palette = new int[4];
+        palette(c0, c1, false, palette);
+        long error = 0;
+        for(int i = 0; i < 16; i++){
+            int best = 0;
+            int bestDistance = Integer.MAX_VALUE;
+            for(int p = 0; p < 4; p++){
+                int dr = r[i] - (palette[p] >> 16 & 0xFF);
+                int dg = g[i] - (palette[p] >> 8 & 0xFF);
+                int db = b[i] - (palette[p] & 0xFF);
+                int distance = dr * dr + dg * dg + db * db;
+                if(distance < bestDistance){
+                    best = p;
+                    bestDistance = distance;
+                }
+            }
+            indices[i] = best;
+            error += counts[i] ? bestDistance : 0;
+        }
+        return error;
+    }
+
+    private static int clamp(int value){
+        return Math.max(0, Math.min(255, value));
+
+    }
+
+    /** Writes the 8 byte alpha block of 16 pixels (in eight alpha mode) */
+    private static void encodeAlpha(int[] a, ByteBuffer block){
+        int max = 0;
+        int min = 255;
+        for(int i = 0; i < 16; i++){
+            max = Math.max(max, a[i]);
+            min = Math.min(min, a[i]);
+        }
+        block.put((byte)max);
+        block.put((byte)min);
+
+        long indices = 0;
+        if(max != min){
+            int[] palette = new int[8];
+            alphaPalette(max, min, palette);
+            for(int i = 15; i >= 0; i--){
+                int best = 0;
+                int bestDistance = Integer.MAX_VALUE;
+                for(int p = 0; p < 8; p++){
+                    int distance = Math.abs(a[i] - palette[p]);
+                    if(distance < bestDistance){
+                        best = p;
+                        bestDistance = distance;
+                    }
+                }
+                indices = (indices << 3) | best;
+            }
+        }
+        for(int i = 0; i < 6; i++){
+            block.put((byte)(indices >> (8 * i)));
+        }
+    }
+
+    private static void decodeColor(ByteBuffer blocks, int at, boolean punchThrough, int[] colors){
+        int c0 = (blocks.get(at) & 0xFF) | (blocks.get(at + 1) & 0xFF) << 8;
+        int c1 = (blocks.get(at + 2) & 0xFF) | (blocks.get(at + 3) & 0xFF) << 8;
+        int[] palette = new int[4];
+        palette(c0, c1, punchThrough && c0 <= c1, palette);
+        for(int i = 0; i < 16; i++){
+            int index = (blocks.get(at + 4 + i / 4) >> (2 * (i % 4))) & 3;
+            colors[i] = palette[index];
+        }
+    }
+
+    private static void decodeAlpha(ByteBuffer blocks, int at, int[] alphas){
+        int[] palette = new int[8];
+        alphaPalette(blocks.get(at) & 0xFF, blocks.get(at + 1) & 0xFF, palette);
+        long indices = 0;
+        for(int i = 5; i >= 0; i--){
+            indices = (indices << 8) | (blocks.get(at + 2 + i) & 0xFF);
+        }
+        for(int i = 0; i < 16; i++){
+            alphas[i] = palette[(int)(indices >> (3 * i)) & 7];
+        }
+    }
+
+    /**
+     * Fills in the four colors (as 0xAARRGGBB) a color block can choose from. In three color mode (only possible in
+     * BC1, when color0 is not larger than color1) the third is the midpoint and the fourth is transparent black
+     * */
+    private static void palette(int c0, int c1, boolean threeColor, int[] palette){
+        palette[0] = 0xFF000000 | unpack565(c0);
+        palette[1] = 0xFF000000 | unpack565(c1);
+        if(threeColor){
+            palette[2] = 0xFF000000 | mix(palette[0], palette[1], 1, 1);
+            palette[3] = 0;
+        } else {
+            palette[2] = 0xFF000000 | mix(palette[0], palette[1], 2, 1);
+            palette[3] = 0xFF000000 | mix(palette[0], palette[1], 1, 2);
+        }
+    }
+
+    /** Fills in the eight alphas an alpha block (with a0 larger than a1) can choose from */
+    private static void alphaPalette(int a0, int a1, int[] palette){
+        palette[0] = a0;
+        palette[1] = a1;
+        if(a0 > a1){
+            for(int i = 1; i < 7; i++){
+                palette[i + 1] = ((7 - i) * a0 + i * a1) / 7;
+            }
+        } else {
+            for(int i = 1; i < 5; i++){
+                palette[i + 1] = ((5 - i) * a0 + i * a1) / 5;
+            }
+            palette[6] = 0;
+            palette[7] = 255;
+        }
+    }
+
+    /** @return the weighted average of two 0xRRGGBB colors, channel by channel */
+    private static int mix(int p, int q, int wp, int wq){
+        int r = ((p >> 16 & 0xFF) * wp + (q >> 16 & 0xFF) * wq) / (wp + wq);
+        int g = ((p >> 8 & 0xFF) * wp + (q >> 8 & 0xFF) * wq) / (wp + wq);
+        int b = ((p & 0xFF) * wp + (q & 0xFF) * wq) / (wp + wq);
+        return r << 16 | g << 8 | b;
+    }
+
+    private static int inset(int from, int toward){
+        return from + (toward - from) / 16;
+
+    }
+
+    private static int pack565(int r, int g, int b){
+        return (r * 31 + 127) / 255 << 11 | (g * 63 + 127) / 255 << 5 | (b * 31 + 127) / 255;
+
+    }
+
+    /** @return a 5:6:5 color as 0xRRGGBB, with the low bits filled in from the high ones */
+    private static int unpack565(int c){
+        int r = c >> 11 & 31;
+        int g = c >> 5 & 63;
+        int b = c & 31;
+        return (r << 3 | r >> 2) << 16 | (g << 2 | g >> 4) << 8 | (b << 3 | b >> 2);
+    }
+
+    private static void run(Worker pool, int count, IntConsumer body){
+        if(pool == null){
+            for(int i = 0; i < count; i++){
+                body.accept(i);
+            }
+        } else {
+            pool.parallelFor(count, body);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package GlooKit.GlooAPI;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * CacheFile keeps the versions of a cache file that is memory mapped while it is in use, as AtlasCache and FontCache
+ * files are.
+ * @see AtlasCache
+ * @see FontCache
+ *
+ * A mapped file cannot be replaced on every platform (Windows refuses to, for as long as the mapping lasts), so a cache
+ * is never written over: each write is a new version of the file, numbered one past the newest, as "name.3.atlas" is
+ * to "name.atlas". Readers take the newest version. The older ones are deleted whenever they can be, which for a
+ * version still mapped is once this process has let go of it (at the latest, the next launch).
+ * */
+final class CacheFile {
+
+    private CacheFile(){
+
+    }
+
+    /**
+     * @param file the cache file, without a version
+     * @return the newest version of the cache file, or null if it has never been written
+     * */
+    static Path latest(Path file){
+        int newest = newest(file);
+        if(newest < 0){
+            return null;
+        }
+        deleteBefore(file, newest); // left behind while they were mapped
+        return version(file, newest);
+    }
+
+    /**
+     * Writes the parts, one after another, as a new version of the cache file. The version is written under a
+     * temporary name and then moved into place, so an interrupted write never leaves a broken cache behind
+     *
+     * @param file the cache file, without a version
+     * @param parts the contents of the file, each from its position to its limit (the buffers are left as they are)
+     * */
+    static void write(Path file, ByteBuffer... parts) throws IOException {
+        int next = newest(file) + 1;
+        Path target = version(file, next);
+        Path temporary = Paths.get(target + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            for(ByteBuffer part : parts){
+                ByteBuffer body = part.duplicate();
+                while(body.hasRemaining()){
+                    channel.write(body);
+                }
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE); // nothing has this name mapped yet
+        deleteBefore(file, next);
+    }
+
+    /** @return the number of the newest version of the cache file, or -1 if there is none */
+    private static int newest(Path file){
+        String[] name = split(file);
+        int newest = -1;
+        try(DirectoryStream<Path> versions = Files.newDirectoryStream(directory(file), (path) -> number(path, name) >= 0)){
+            for(Path version : versions){
+                newest = Math.max(newest, number(version, name));
+            }
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+        return newest;
+    }
+
+    /** Deletes every version of the cache file older than the given one that nothing has mapped */
+    private static void deleteBefore(Path file, int current){
+        String[] name = split(file);
+        try(DirectoryStream<Path> versions = Files.newDirectoryStream(directory(file), (path) -> number(path, name) >= 0)){
+            for(Path version : versions){
+                if(number(version, name) < current){
+                    try {
+                        Files.deleteIfExists(version);
+                    } catch (IOException e){
+                        // still mapped, so it is deleted by a later write or launch instead
+                    }
+                }
+            }
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+    /** @return the given version of the cache file */
+    private static Path version(Path file, int number){
+        String[] name = split(file);
+        return directory(file).resolve(name[0] + "." + number + name[1]);
+    }
+
+    /** @return the number of a version of the cache file, or -1 if the path is not one */
+    private static int number(Path version, String[] name){
+        String found = version.getFileName().toString();
+        if(found.length() <= name[0].length() + 1 + name[1].length() || !found.startsWith(name[0] + ".") || !found.endsWith(name[1])){
+            return -1;
+        }
+        String number = found.substring(name[0].length() + 1, found.length() - name[1].length());
+        for(int i = 0; i < number.length(); i++){
+            if(!Character.isDigit(number.charAt(i))){
+                return -1;
+            }
+        }
+        return number.length() < 10 ? Integer.parseInt(number) : -1;
+    }
+
+    /** @return the name of the cache file before its extension, and the extension (with its dot) */
+    private static String[] split(Path file){
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? new String[]{name.substring(0, dot), name.substring(dot)} : new String[]{name, ""};
+    }
+
+    private static Path directory(Path file){
+        Path parent = file.getParent();
+        return parent == null ? Paths.get("") : parent;
+
+    }
+}
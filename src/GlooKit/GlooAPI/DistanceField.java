@@ -0,0 +1,159 @@
+package GlooKit.GlooAPI;
+
+import org.lwjgl.BufferUtils;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * DistanceField turns the outline of a glyph into a signed distance field: an image whose alpha at each pixel is the
+ * distance from the pixel to the nearest edge of the outline, 128 on the edge itself, rising to 255 SPREAD pixels inside
+ * and falling to 0 SPREAD pixels outside. Sampled with linear filtering and cut at 128 by the shader, the edge stays
+ * sharp at any size, so a single small image of each glyph serves every point size.
+ * @see GlooFontFamily
+ *
+ * The outline is flattened into straight segments. Whether a pixel is inside is found by sweeping along its row,
+ * counting the segments that cross the row (with the winding rule of the outline), and its distance is measured to the
+ * segments that come within SPREAD of it, which are the only ones that can matter. Nothing here touches OpenGL or
+ * shared state, so glyphs are made in parallel on the ThreadPool.
+ * */
+final class DistanceField {
+
+    static final int SPREAD = 6; // how many pixels (at the baked size) the field reaches either side of the edge
+    private static final double FLATNESS = 0.05; // the furthest, in pixels, a flattened segment strays from the curve
+
+    private DistanceField(){
+
+    }
+
+    /**
+     * @param outline the outline of the glyph, in the pixels of the image (pixel x, y covers x to x + 1 and y to y + 1)
+     * @param width the width of the image, which should leave SPREAD pixels around the outline
+     * @param height the height of the image, likewise
+     * @param coverage whether the image is for a single channel atlas, with a byte per pixel
+     * @return the pixels of the image: the distance field alone, or (in RGBA) white with the distance field in the alpha
+     * */
+    static ByteBuffer render(Shape outline, int width, int height, boolean coverage){
+        PathIterator path = outline.getPathIterator(null, FLATNESS);
+        boolean nonZero = path.getWindingRule() == PathIterator.WIND_NON_ZERO;
+        float[] edges = flatten(path);
+        int count = edges.length / 4;
+
+        ByteBuffer pixels = BufferUtils.createByteBuffer((coverage ? 1 : 4) * width * height);
+        int[] near = new int[count]; // the segments within SPREAD of the current row
+        float[] crossings = new float[count]; // where the segments cross the current row ...
+        int[] windings = new int[count]; // ... and which way
+        for(int y = 0; y < height; y++){
+            float py = y + 0.5f;
+
+            int nearCount = 0;
+            int crossingCount = 0;
+            for(int e = 0; e < count; e++){
+                float y0 = edges[4 * e + 1];
+                float y1 = edges[4 * e + 3];
+                if(Math.min(y0, y1) <= py + SPREAD && Math.max(y0, y1) >= py - SPREAD){
+                    near[nearCount++] = e;
+                }
+                if((y0 <= py) != (y1 <= py)){ // the segment crosses the row (counting each end only once)
+                    float x0 = edges[4 * e];
+                    float x1 = edges[4 * e + 2];
+                    float x = x0 + (py - y0) * (x1 - x0) / (y1 - y0);
+                    int winding = y1 > y0 ? 1 : -1;
+                    int i = crossingCount++;
+                    while(i > 0 && crossings[i - 1] > x){ // kept in order of x (there are only ever a few)
+                        crossings[i] = crossings[i - 1];
+                        windings[i] = windings[i - 1];
+                        i -= 1;
+                    }
+                    crossings[i] = x;
+                    windings[i] = winding;
+                }
+            }
+
+            int crossed = 0;
+            int winding = 0;
+            for(int x = 0; x < width; x++){
+                float px = x + 0.5f;
+                while(crossed < crossingCount && crossings[crossed] < px){
+                    winding += windings[crossed++];
+                }
+                boolean inside = nonZero ? winding != 0 : (winding & 1) != 0;
+
+                float nearest = SPREAD * SPREAD;
+                for(int n = 0; n < nearCount; n++){
+                    int e = 4 * near[n];
+                    float x0 = edges[e];
+                    float x1 = edges[e + 2];
+                    if(Math.min(x0, x1) > px + SPREAD || Math.max(x0, x1) < px - SPREAD){
+                        continue;
+                    }
+                    nearest = Math.min(nearest, squaredDistance(px, py, x0, edges[e + 1], x1, edges[e + 3]));
+                }
+                float distance = (float)Math.sqrt(nearest);
+                float value = 0.5f + (inside ? distance : -distance) / (2 * SPREAD);
+
+                if(!coverage){
+                    pixels.put((byte)255).put((byte)255).put((byte)255);
+                }
+                pixels.put((byte)Math.max(0, Math.min(255, Math.round(value * 255))));
+            }
+        }
+        pixels.flip();
+        return pixels;
+    }
+
+    /** @return the segments of a flattened path, four floats (x0, y0, x1, y1) each, with every subpath closed */
+    private static float[] flatten(PathIterator path){
+        float[] edges = new float[64];
+        int length = 0;
+        float[] point = new float[6];
+        float startX = 0;
+        float startY = 0;
+        float lastX = 0;
+        float lastY = 0;
+        for(; !path.isDone(); path.next()){
+            int type = path.currentSegment(point);
+            float x = type == PathIterator.SEG_CLOSE || type == PathIterator.SEG_MOVETO ? startX : point[0];
+            float y = type == PathIterator.SEG_CLOSE || type == PathIterator.SEG_MOVETO ? startY : point[1];
+            if(length + 4 > edges.length){
+                edges = Arrays.copyOf(edges, 2 * edges.length);
+            }
+            if(x != lastX || y != lastY){ // a line to x, y (or back to the start, to close the last subpath)
+                edges[length++] = lastX;
+                edges[length++] = lastY;
+                edges[length++] = x;
+                edges[length++] = y;
+            }
+            if(type == PathIterator.SEG_MOVETO){
+                startX = point[0];
+                startY = point[1];
+                x = startX;
+                y = startY;
+            }
+            lastX = x;
+            lastY = y;
+        }
+        if(lastX != startX || lastY != startY){
+            edges = Arrays.copyOf(edges, length + 4);
+            edges[length++] = lastX;
+            edges[length++] = lastY;
+            edges[length++] = startX;
+            edges[length++] = startY;
+        }
+        return Arrays.copyOf(edges, length);
+    }
+
+    /** @return the squared distance from px, py to the segment from x0, y0 to x1, y1 */
+    private static float squaredDistance(float px, float py, float x0, float y0, float x1, float y1){
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0 ? 0 : ((px - x0) * dx + (py - y0) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        float ex = x0 + t * dx - px;
+        float ey = y0 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,86 @@
+package GlooKit.GlooAPI;
+
+import GlooKit.GlooAPI.DrawingObjects.DrawingObject;
+
+import java.util.Arrays;
+
+/**
+ * A DrawList is the per-frame list of DrawingObjects that a Batch is asked to draw.
+ * @see GlooBatch.Batch
+ *
+ * It is backed by a plain array that survives from frame to frame, so adding objects and clearing the list do not
+ * allocate once the list has grown to the size of a typical frame. Objects are handed back in draw order, which is the
+ * reverse of the order they were added in (the most recently added object is drawn first, as it always has been).
+ *
+ * Capacity is retained between frames. If a scene stays well below the capacity of the list for a long stretch of
+ * frames (say, after leaving a very busy Room) the array is shrunk back down, so one large frame does not pin memory
+ * for the rest of the application.
+ * */
+final class DrawList {
+
+    /** The smallest the backing array will ever be */
+    private static final int MINIMUM_CAPACITY = 64;
+    /** The number of consecutive frames the list must stay under a quarter of its capacity before it is shrunk */
+    private static final int SHRINK_FRAMES = 300;
+
+    private DrawingObject[] objects;
+    private int size;
+
+    // for the capacity retention policy
+    private int peak;
+    private int quietFrames;
+
+    DrawList(){
+        objects = new DrawingObject[MINIMUM_CAPACITY];
+        size = 0;
+        peak = 0;
+        quietFrames = 0;
+    }
+
+    /**
+     * Queues a DrawingObject to be drawn this frame, doubling the backing array if it is full
+     * */
+    void add(DrawingObject O){
+        if(size == objects.length){
+            objects = Arrays.copyOf(objects, objects.length * 2);
+        }
+        objects[size] = O;
+        size += 1;
+    }
+
+    /**
+     * @param index the position of the object in draw order (0 is drawn first)
+     * @return the DrawingObject at that position
+     * */
+    DrawingObject get(int index){
+        return objects[size - 1 - index];
+
+    }
+
+    int size(){
+        return size;
+
+    }
+
+    /**
+     * Empties the list for the next frame. References are dropped so that DrawingObjects can still be collected,
+     * but the array itself is kept unless it has been mostly empty for SHRINK_FRAMES frames in a row.
+     * */
+    void clear(){
+        Arrays.fill(objects, 0, size, null);
+        peak = Math.max(peak, size);
+        size = 0;
+
+        if(objects.length > MINIMUM_CAPACITY && peak < objects.length / 4){
+            quietFrames += 1;
+            if(quietFrames >= SHRINK_FRAMES){
+                objects = new DrawingObject[Math.max(MINIMUM_CAPACITY, objects.length / 2)];
+                quietFrames = 0;
+                peak = 0;
+            }
+        } else {
+            quietFrames = 0;
+            peak = 0;
+        }
+    }
+}
@@ -2,22 +2,47 @@ package GlooKit.GlooAPI.DrawingObjects;
 
 import GlooKit.GlooAPI.GlooBatch;
 import GlooKit.GlooAPI.Vertex;
+import GlooKit.GlooAPI.VertexArena;
 import GlooKit.GlooFramework.GlooApplication;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 
+/**
+ * A DrawingObject is a collection of vertices (and the indices that connect them) that is drawn through a GlooBatch.
+ *
+ * The floats of all of an object's vertices sit back to back in a single Block of the batch's VertexArena, and each
+ * Vertex in vertices() is a view onto its slot in that Block. This lets a GlooBatch copy the whole object into an
+ * upload buffer at once (see vertexData() and vertexOffset()).
+ * @see VertexArena
+ *
+ * Indices are kept in a plain int[] (see addIndex(int) and indexData()), relative to the object's own first vertex.
+ * GlooBatch shifts them into place, and switches to 32 bit indices whenever 16 bits are not enough.
+ * */
 public abstract class DrawingObject {
 
     private final GlooBatch batch;
     private final List<Vertex> vertices;
-    private final List<Short> indices;
+    private final List<Vertex> vertexView;
+    private int[] indices;
+    private int indexCount;
+    // where the floats of this object's vertices live
+    private VertexArena.Block block;
+    // true whenever a vertex has changed since a retained GlooBatch last uploaded this object
+    private volatile boolean dirty;
+    // true if everything this object draws is fully opaque (see setOpaque(boolean))
+    private volatile boolean opaque;
 
     public DrawingObject(GlooApplication app, int batchHandle){
         this.batch = app.getCore().getBatch(batchHandle);
         vertices = new ArrayList<>();
-        indices = new ArrayList<>();
+        vertexView = Collections.unmodifiableList(vertices);
+        indices = new int[6];
+        indexCount = 0;
+        dirty = true;
     }
 
     public void apply(Consumer<Vertex> function){
@@ -32,20 +57,116 @@ public abstract class DrawingObject {
 
     }
 
+    /** @return a read only list of this object's vertices (use newVertex() to add one) */
     public List<Vertex> vertices(){
-        return vertices;
+        return vertexView;
 
     }
     public Vertex vertex(int index){
         return vertices.get(index);
 
     }
-    public List<Short> indices(){
+    /**
+     * Appends an index to this object, growing the index array as needed
+     * @param index the position of a vertex in vertices()
+     * */
+    public void addIndex(int index){
+        if(indexCount == indices.length){
+            indices = Arrays.copyOf(indices, indices.length * 2);
+        }
+        indices[indexCount] = index;
+        indexCount += 1;
+        markDirty();
+    }
+    /** @return the number of indices in this object */
+    public int indexCount(){
+        return indexCount;
+
+    }
+    public int index(int i){
+        return indices[i];
+
+    }
+    /** @return the array holding this object's indices; only the first indexCount() entries are meaningful */
+    public int[] indexData(){
         return indices;
 
     }
+    /**
+     * Adds a new vertex (with the defaults of the batch's vertex type) to the end of this object
+     * If the object's Block is full, every vertex moves into a Block twice the size
+     *
+     * @return the new vertex
+     * */
     public Vertex newVertex(){
-        return batch.createVertex();
+        Vertex v = batch.createVertex();
+        VertexArena arena = batch.getArena();
+        int stride = arena.stride();
+
+        if(v.length() != stride){
+            new Exception("ERROR: vertex of length " + v.length() + " does not match the batch stride of " + stride).printStackTrace();
+        }
+
+        if(block == null || vertices.size() == block.capacity()){
+            VertexArena.Block old = block;
+            block = arena.allocate(vertices.size() + 1, this);
+            if(old != null){
+                System.arraycopy(old.data(), old.offset(), block.data(), block.offset(), vertices.size() * stride);
+                for(int i = 0; i < vertices.size(); i++){
+                    vertices.get(i).moveTo(block.data(), block.offset() + i * stride, false);
+                }
+                arena.release(old);
+            }
+        }
+
+        v.moveTo(block.data(), block.offset() + vertices.size() * stride, true);
+        v.setOwner(this);
+        vertices.add(v);
+        markDirty();
+        return v;
+    }
+
+    /** @return the array holding this object's vertices (null until the first vertex is added) */
+    public float[] vertexData(){
+        return block == null ? null : block.data();
+
+    }
+    /** @return the index in vertexData() of the first float of this object's first vertex */
+    public int vertexOffset(){
+        return block == null ? 0 : block.offset();
+
+    }
+
+    /**
+     * Dirty tracking for retained GlooBatches (see GlooBatch#setRetained(boolean))
+     * An object is dirty when it is first made and whenever one of its vertices changes value
+     * */
+    public void markDirty(){
+        dirty = true;
+
+    }
+    public boolean isDirty(){
+        return dirty;
+
+    }
+    public void markClean(){
+        dirty = false;
+
+    }
+
+    /**
+     * Marks whether everything this object draws is fully opaque (a solid color over an opaque Texture), which lets a
+     * GlooBatch with an opaque pass draw it without blending, ahead of the translucent objects. Objects are translucent
+     * until they are told otherwise
+     * @see GlooBatch#setOpaquePass(boolean)
+     * @see GlooKit.GlooAPI.Texture#isOpaque()
+     * */
+    public void setOpaque(boolean opaque){
+        this.opaque = opaque;
+
+    }
+    public boolean isOpaque(){
+        return opaque;
 
     }
 
@@ -12,21 +12,20 @@ public class Polygon extends DrawingObject {
     }
     public void addVertex(){
 
-        Vertex v = newVertex();
+        Vertex v = newVertex(); // TODO use XYZ
 //        v.set(v.X(), X);
 //        v.set(v.Y(), Y);
 //        v.set(v.Z(), Z);
-        vertices().add(v); // TODO use XYZ
 
-        if (indices().size() < 3) {
+        if (indexCount() < 3) {
             // if we don't have three indices in the list, then we simply add the index to the list
-            indices().add((short) indices().size());
+            addIndex(indexCount());
         } else {
             // we have more than three, so we are adding triangles, convexly...
             // each new triangle is formed from the 0 vertex, the last vertex added, and this new vertex
-            indices().add((short) 0);
-            indices().add((short)(vertices().size() - 2));
-            indices().add((short)(vertices().size() - 1));
+            addIndex(0);
+            addIndex(vertices().size() - 2);
+            addIndex(vertices().size() - 1);
         }
 
     }
@@ -68,9 +67,9 @@ public class Polygon extends DrawingObject {
 //    }
 
     public Polygon close(){
-        indices().add((short)0);
-        indices().add((short)1);
-        indices().add((short)(vertices().size() - 1));
+        addIndex(0);
+        addIndex(1);
+        addIndex(vertices().size() - 1);
         return this;
     }
 
@@ -14,12 +14,12 @@ public class Quad extends Polygon {
         addVertex();
 
         // We want to draw the 4 vertices as two triangles:
-        indices().add((short)0);
-        indices().add((short)1);
-        indices().add((short)2);
-        indices().add((short)0);
-        indices().add((short)2);
-        indices().add((short)3);
+        addIndex(0);
+        addIndex(1);
+        addIndex(2);
+        addIndex(0);
+        addIndex(2);
+        addIndex(3);
     }
 
     public void exhume(float X, float Y, float W, float H, float Z){
@@ -0,0 +1,283 @@
+package GlooKit.GlooAPI;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A FontCache is a font rasterized by a GlooFontFamily saved to disk, so that the next launch can take its glyphs
+ * straight from the file, without AWT opening the font or drawing a single glyph. @see GlooFontFamily
+ *
+ * A cache file sits in the working directory (beside the AtlasCache files), and is named after the .ttf file, a CRC32
+ * of its contents, and the way it was rasterized: the point size, the character set, antialiasing, distance fields and
+ * whether the atlas is single channel. It holds the family name and style of the font and its line, char and base
+ * heights, then the offset, size, advance and pixel size of every glyph of the set, followed by the pixels of them all
+ * (RGBA, or coverage alone for a single channel atlas). A cache is only used if the .ttf file still has the same CRC32
+ * and everything else matches too; otherwise the font is rasterized as usual and the cache is written again.
+ * @see AtlasCache
+ *
+ * The pixels are memory mapped rather than read, and each glyph's Texture is a slice of the mapping, so they are only
+ * read when the atlas is packed.
+ * */
+final class FontCache {
+
+    private static final int MAGIC = 0x474C464E; // "GLFN"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".glyphs";
+
+    private final Path file;
+    private final long crc; // the CRC32 of the .ttf file
+    private final float pointSize;
+    private final String set;
+    private final boolean antiAlias;
+    private final boolean distanceField;
+    private final boolean coverage;
+
+    /** What a cache file says about a font */
+    static final class Glyphs {
+        String family;
+        String name;
+        int style; // GLOOFONT_PLAIN, GLOOFONT_ITALIC or GLOOFONT_BOLD
+        float lineHeight;
+        float charHeight;
+        float baseHeight;
+        int[] codePoints;
+        float[] x; // the offset, size and advance of each glyph, as GlooCharacter lays it out
+        float[] y;
+        float[] w;
+        float[] h;
+        float[] advance;
+        int[] widths; // the size of each glyph's pixels
+        int[] heights;
+        ByteBuffer[] pixels; // each a slice of the mapped file (or, to write, the glyph's own pixels)
+    }
+
+    private FontCache(Path file, long crc, float pointSize, String set, boolean antiAlias, boolean distanceField, boolean coverage){
+        this.file = file;
+        this.crc = crc;
+        this.pointSize = pointSize;
+        this.set = set;
+        this.antiAlias = antiAlias;
+        this.distanceField = distanceField;
+        this.coverage = coverage;
+    }
+
+    /**
+     * @param fontPath the .ttf file of the font
+     * @param set the characters rasterized up front (null, the COMPLETE_TEXT_SET, for none)
+     * @param coverage whether the glyphs are for a single channel atlas
+     * @return the cache for the font rasterized this way, or null if the .ttf file cannot be read
+     * */
+    static FontCache of(String fontPath, float pointSize, String set, boolean antiAlias, boolean distanceField, boolean coverage){
+        long crc = checksum(fontPath);
+        if(crc < 0){
+            return null;
+        }
+        String characters = set == null ? "" : set;
+        int key = 31 * (31 * (31 * Float.floatToIntBits(pointSize) + characters.hashCode()) + (antiAlias ? 1 : 0)) + (distanceField ? 2 : 0) + (coverage ? 4 : 0);
+        Path file = Paths.get(prefix(fontPath, crc) + Integer.toHexString(key) + EXTENSION);
+        return new FontCache(file, crc, pointSize, characters, antiAlias, distanceField, coverage);
+    }
+
+    /**
+     * Looks through the cache files of a .ttf file (however it was rasterized) for the name of its family, so that a
+     * font can be matched to its GlooFontFamily without AWT opening it
+     *
+     * @return the family name of the font, or null if it has no cache file
+     * */
+    static String family(String fontPath){
+        long crc = checksum(fontPath);
+        if(crc < 0){
+            return null;
+        }
+        String prefix = prefix(fontPath, crc);
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(""), (path) -> {
+            String name = path.getFileName().toString(); // matched by hand, since a font's name can hold glob syntax ("[wdth,wght]")
+            return name.startsWith(prefix) && name.endsWith(EXTENSION);
+        })){
+            for(Path file : files){
+                try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    if(mapped.getInt() == MAGIC && mapped.getInt() == VERSION && mapped.getLong() == crc){
+                        return getString(mapped);
+                    }
+                } catch (IOException | RuntimeException e){
+                    // a damaged file says nothing, but another may
+                }
+            }
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Maps the cache file, if there is one and it still describes the font rasterized this way
+     *
+     * @return the Glyphs in the cache, or null if there is no usable cache
+     * */
+    Glyphs read(){
+        Path file = CacheFile.latest(this.file);
+        if(file == null){
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(mapped.getInt() != MAGIC || mapped.getInt() != VERSION || mapped.getLong() != crc){
+                return null;
+            }
+            Glyphs glyphs = new Glyphs();
+            glyphs.family = getString(mapped);
+            glyphs.name = getString(mapped);
+            if(mapped.getFloat() != pointSize || !getString(mapped).equals(set)){
+                return null;
+            }
+            if((mapped.get() == 1) != antiAlias || (mapped.get() == 1) != distanceField || (mapped.get() == 1) != coverage){
+                return null;
+            }
+            glyphs.style = mapped.getInt();
+            glyphs.lineHeight = mapped.getFloat();
+            glyphs.charHeight = mapped.getFloat();
+            glyphs.baseHeight = mapped.getFloat();
+
+            int count = mapped.getInt();
+            glyphs.codePoints = new int[count];
+            glyphs.x = new float[count];
+            glyphs.y = new float[count];
+            glyphs.w = new float[count];
+            glyphs.h = new float[count];
+            glyphs.advance = new float[count];
+            glyphs.widths = new int[count];
+            glyphs.heights = new int[count];
+            glyphs.pixels = new ByteBuffer[count];
+            long bytes = 0;
+            for(int i = 0; i < count; i++){
+                glyphs.codePoints[i] = mapped.getInt();
+                glyphs.x[i] = mapped.getFloat();
+                glyphs.y[i] = mapped.getFloat();
+                glyphs.w[i] = mapped.getFloat();
+                glyphs.h[i] = mapped.getFloat();
+                glyphs.advance[i] = mapped.getFloat();
+                glyphs.widths[i] = mapped.getInt();
+                glyphs.heights[i] = mapped.getInt();
+                bytes += bytes(glyphs.widths[i], glyphs.heights[i]);
+            }
+            if(mapped.remaining() != bytes){
+                return null; // the file was cut short
+            }
+
+            ByteBuffer pixels = mapped.slice();
+            int at = 0;
+            for(int i = 0; i < count; i++){
+                int size = (int)bytes(glyphs.widths[i], glyphs.heights[i]);
+                ByteBuffer glyph = pixels.duplicate();
+                glyph.position(at);
+                glyph.limit(at + size);
+                glyphs.pixels[i] = glyph.slice();
+                at += size;
+            }
+            return glyphs;
+
+        } catch (IOException | RuntimeException e){ // a damaged file can also run past its end
+            e.printStackTrace();
+            return null; // an unreadable cache is only a missed opportunity
+        }
+    }
+
+    /**
+     * Writes the rasterized font to the cache file, as a new version of it, so that the version a family may still
+     * have mapped (its glyphs are slices of it) is never written over @see CacheFile
+     * */
+    void write(Glyphs glyphs){
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(crc);
+            putString(out, glyphs.family);
+            putString(out, glyphs.name);
+            out.writeFloat(pointSize);
+            putString(out, set);
+            out.writeByte(antiAlias ? 1 : 0);
+            out.writeByte(distanceField ? 1 : 0);
+            out.writeByte(coverage ? 1 : 0);
+            out.writeInt(glyphs.style);
+            out.writeFloat(glyphs.lineHeight);
+            out.writeFloat(glyphs.charHeight);
+            out.writeFloat(glyphs.baseHeight);
+            out.writeInt(glyphs.codePoints.length);
+            for(int i = 0; i < glyphs.codePoints.length; i++){
+                out.writeInt(glyphs.codePoints[i]);
+                out.writeFloat(glyphs.x[i]);
+                out.writeFloat(glyphs.y[i]);
+                out.writeFloat(glyphs.w[i]);
+                out.writeFloat(glyphs.h[i]);
+                out.writeFloat(glyphs.advance[i]);
+                out.writeInt(glyphs.widths[i]);
+                out.writeInt(glyphs.heights[i]);
+            }
+            out.flush();
+
+            ByteBuffer[] parts = new ByteBuffer[glyphs.pixels.length + 1];
+            parts[0] = ByteBuffer.wrap(bytes.toByteArray());
+            for(int i = 0; i < glyphs.pixels.length; i++){
+                ByteBuffer body = glyphs.pixels[i].duplicate();
+                body.clear();
+                body.limit((int)bytes(glyphs.widths[i], glyphs.heights[i])); // an empty glyph's buffer can hold a pixel it does not show
+                parts[i + 1] = body;
+            }
+            CacheFile.write(file, parts);
+
+        } catch (IOException e){
+            e.printStackTrace(); // the font is fine without a cache; it will just be rasterized again next launch
+        }
+    }
+
+    /** @return the bytes of a glyph's pixels */
+    private long bytes(int width, int height){
+        return (coverage ? 1L : 4L) * width * height;
+
+    }
+
+    /** @return the start of the name of every cache file of a .ttf file with this CRC32 */
+    private static String prefix(String fontPath, long crc){
+        String name = Paths.get(fontPath).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + "-" + Long.toHexString(crc) + "-";
+    }
+
+    /** @return the CRC32 of a file's contents, or -1 if it cannot be read */
+    private static long checksum(String path){
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+            CRC32 crc = new CRC32();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return crc.getValue();
+        } catch (IOException e){
+            return -1;
+        }
+    }
+
+    private static void putString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer in){
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -8,11 +8,12 @@ import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.*;
 
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
 import static GlooKit.GlooShaders.Shaders.createShaderProgram;
@@ -61,31 +62,62 @@ public abstract class GlooBatch {
     public static final int FLOAT_MAT4x4 = 20;
 //    public static final int FLOAT_MAT4 = FLOAT_MAT4x4;
 
+    // streaming modes (see StreamBuffer)
+    public static final int STREAM_DATA = 0; // reallocate the buffers with glBufferData for every upload
+    public static final int STREAM_ORPHAN = 1; // orphan the buffers once a frame and fill them with glBufferSubData
+    public static final int STREAM_PERSISTENT = 2; // pack straight into a persistently mapped, triple buffered ring
+
+    // the defines the shaders of a batch can be compiled with (see linkShaders)
+    private static final int PAGED = 1; // the atlas is a texture array
+    private static final int PREMULTIPLIED = 2; // the atlas is premultiplied
+    private static final int ORDERED = 4; // the depth of each vertex goes by draw order, for the opaque pass
+
     // the custom collection of drawing objects to be drawn
     private GlooApplication application;
     private final Batch batch;
+    private final Retained retained;
+    private boolean isRetained;
+    private boolean opaquePass; // whether opaque objects are drawn in a pass of their own (see setOpaquePass(boolean))
+    // frames packed ahead of time by prepare(), for pipelined applications (see GlooApplication#setPipelined(boolean))
+    private final Prepared[] prepared;
+    private int back; // the Prepared that the next prepare() packs into
+    private Prepared ready; // the last frame prepare() packed, waiting for flip()
+    private Prepared pending; // the frame render(int) will draw next
 //    private int vertexSize;
     final float precedent;
     int handle;
     protected TextureAtlas atlas;
     private final boolean monoThreaded;
+    private PackingPolicy packingPolicy;
     private final GlooCore core;
 
     private int shaderProgram;
+    private String[] shaderFiles; // the vertex and fragment shader files, kept so the shaders can be linked again
+    private int shaderVariant; // the defines the linked shaders were compiled with (PAGED, PREMULTIPLIED, ORDERED)
+    private String[] parameterNames;
+    private List<String> uniformNames = new ArrayList<>();
+    private int[] uniformLocations = new int[0];
+    private int orderLocation = -1; // the drawOrder uniform of ORDERED shaders
     private int VAOID;
-    private int VBOID;
-    private int indicesVBOID;
+    private StreamBuffer vertexStream;
+    private StreamBuffer indexStream;
+    private int streamingMode = STREAM_DATA;
+    private int[] parameterLengths;
     private int parameterCount;
     private int vertexSize;
+    private VertexArena arena;
 
 
     public abstract Vertex createVertex();
 
     public GlooBatch(GlooApplication app, float drawPrecedent, boolean monoThreaded, TextureAtlas atlas){
         batch = new Batch(app.getPool());
+        retained = new Retained();
+        prepared = new Prepared[]{new Prepared(), new Prepared()};
         this.precedent = drawPrecedent;
         this.atlas = atlas == null ? new TextureAtlas(app) : atlas;
         this.monoThreaded = monoThreaded;
+        this.packingPolicy = monoThreaded ? PackingPolicy.SINGLE_THREADED : new AdaptivePackingPolicy();
         this.core = app.getCore();
         application = app;
     }
@@ -97,6 +129,14 @@ public abstract class GlooBatch {
     public void addTexture(String filePath){
         atlas.addTexture(filePath);
 
+    }
+    public TextureLoad loadTexture(String filePath){
+        return atlas.loadTexture(filePath);
+
+    }
+    public Texture streamTexture(String filePath){
+        return atlas.streamTexture(filePath);
+
     }
     public void bindTextures(){
         atlas.bindAtlas();
@@ -105,13 +145,130 @@ public abstract class GlooBatch {
     public int getAtlasHandle(){
         return atlas.handle();
 
+    }
+    public int getAtlasGeneration(){
+        return atlas.generation();
+
+    }
+
+    /**
+     * Switches the TextureAtlas of this batch to pages of a fixed size (see TextureAtlas#setPageSize(int)). The shaders
+     * of every batch drawing from the atlas are compiled again, with PAGED defined, the next time they are used
+     *
+     * @param pageSize the width and height of each page in pixels, or 0 to go back to a single texture
+     * */
+    public void setPagedTextures(int pageSize){
+        atlas.setPageSize(pageSize);
+
+    }
+
+    /**
+     * Switches the TextureAtlas of this batch to block compressed textures (see TextureAtlas#setCompressed(boolean)),
+     * which takes effect with a full repack the next time the atlas is bound
+     * */
+    public void setCompressedTextures(boolean compressed){
+        atlas.setCompressed(compressed);
+
+    }
+
+    /**
+     * Switches the TextureAtlas of this batch to premultiplied alpha (see TextureAtlas#setPremultiplied(boolean)). The
+     * shaders of every batch drawing from the atlas are compiled again, with PREMULTIPLIED defined, and
+     * enableBlending() picks the blend function to match
+     * */
+    public void setPremultipliedTextures(boolean premultiplied){
+        atlas.setPremultiplied(premultiplied);
+
+    }
+
+    /**
+     * Turns blending on, with the blend function that suits the TextureAtlas of this batch: GL_ONE,
+     * GL_ONE_MINUS_SRC_ALPHA if it is premultiplied, and GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA if not. A batch calls this
+     * in its render(Matrix) before drawing
+     * */
+    protected void enableBlending(){
+        GL11.glEnable(GL11.GL_BLEND);
+        GL11.glBlendFunc(atlas.isPremultiplied() ? GL11.GL_ONE : GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Splits every frame of this batch into two passes. The opaque objects (see DrawingObject#setOpaque(boolean)) are
+     * drawn first, front to back, with blending off and depth writes on, so that the GPU skips shading whatever they
+     * cover. The translucent objects are drawn after them, back to front and blended, with depth writes off, so they
+     * show through one another and are only hidden by the opaque objects in front of them.
+     *
+     * Everything is still packed into the same buffers and drawn in the same order as before: the shaders are compiled
+     * with ORDERED defined, and give each vertex a depth by its place in the frame (objects drawn first are in front),
+     * and only the indices are arranged into the two passes. This saves fill rate wherever opaque sprites pile up on
+     * top of each other, as panels in a UI do. The batch must have depth testing on, as DefaultBatch does
+     * */
+    public void setOpaquePass(boolean opaquePass){
+        this.opaquePass = opaquePass;
+
+    }
+    public boolean isOpaquePass(){
+        return opaquePass;
+
     }
     public void describeShaders(String path, String vertexShader, String fragmentShader, String geometryShader) {
 
         System.out.println(path + vertexShader);
         System.out.println(path + fragmentShader);
-        shaderProgram = createShaderProgram(loadVertexShader(path + vertexShader), loadFragmentShader(path + fragmentShader));
+        shaderFiles = new String[]{path + vertexShader, path + fragmentShader};
+        linkShaders();
+
+    }
+
+    /**
+     * Compiles and links the shaders of this batch, in the variant that matches its TextureAtlas and passes: a paged
+     * atlas is a GL_TEXTURE_2D_ARRAY, so its shaders are compiled with PAGED defined (and sample with the layer of each
+     * vertex), a premultiplied atlas with PREMULTIPLIED, and a batch with an opaque pass with ORDERED
+     *
+     * The attribute and uniform names that have already been described are looked up again in the new program
+     * */
+    private void linkShaders(){
+        if(shaderProgram != 0){
+            GL20.glDeleteProgram(shaderProgram);
+        }
+        shaderVariant = variant();
+        List<String> defines = new ArrayList<>();
+        if((shaderVariant & PAGED) != 0){
+            defines.add("PAGED");
+        }
+        if((shaderVariant & PREMULTIPLIED) != 0){
+            defines.add("PREMULTIPLIED");
+        }
+        if((shaderVariant & ORDERED) != 0){
+            defines.add("ORDERED");
+        }
+        String[] names = defines.toArray(new String[0]);
+        shaderProgram = createShaderProgram(loadVertexShader(shaderFiles[0], names), loadFragmentShader(shaderFiles[1], names));
+
+        if(parameterNames != null){
+            // attribute locations only take effect when the program is linked
+            for(int index = 0; index < parameterNames.length; index++){
+                GL20.glBindAttribLocation(shaderProgram, index, parameterNames[index]);
+            }
+            GL20.glLinkProgram(shaderProgram);
+        }
+        for(int i = 0; i < uniformLocations.length; i++){
+            uniformLocations[i] = GL20.glGetUniformLocation(shaderProgram, uniformNames.get(i));
+        }
+        orderLocation = GL20.glGetUniformLocation(shaderProgram, "drawOrder");
+    }
 
+    /** @return the shader variant (see linkShaders) that suits the atlas and passes of this batch as they are now */
+    private int variant(){
+        return (atlas.isPaged() ? PAGED : 0) | (atlas.isPremultiplied() ? PREMULTIPLIED : 0) | (opaquePass ? ORDERED : 0);
+
+    }
+
+    /** Makes the shaders of this batch the current program, first linking them again if the atlas or passes have changed */
+    private void useShaders(){
+        if(shaderVariant != variant()){
+            linkShaders();
+        }
+        GL20.glUseProgram(shaderProgram);
     }
     public void describeVertices(int[] parameterLengths, String... parameterNames){
 
@@ -121,42 +278,124 @@ public abstract class GlooBatch {
             parameterCount = parameterNames.length;
         }
 
+        this.parameterLengths = parameterLengths;
+        vertexSize = 0;
+        for(int l : parameterLengths){
+            vertexSize += l;
+        }
+        arena = new VertexArena(vertexSize);
+
         VAOID = GL30.glGenVertexArrays();
         GL30.glBindVertexArray(VAOID);
         // Create and bind the default VAO's VBO
-        VBOID = GL15.glGenBuffers();
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, VBOID);
+        vertexStream = new StreamBuffer(GL15.GL_ARRAY_BUFFER, vertexSize * 4);
+        vertexStream.setMode(streamingMode);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexStream.id());
 
-        int length = 0;
-        for(int l : parameterLengths){
-            length += l;
+        this.parameterNames = parameterNames;
+        for(int index = 0; index < parameterNames.length; index++){
+            GL20.glBindAttribLocation(shaderProgram, index, parameterNames[index]);
         }
-        int index = 0;
+        GL20.glLinkProgram(shaderProgram); // attribute locations only take effect when the program is linked
+        orderLocation = GL20.glGetUniformLocation(shaderProgram, "drawOrder");
+        pointAttributes();
+
+        // unbind the VBO
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        // deselect the VAO
+        GL30.glBindVertexArray(0);
+        // Create and bind a VBO for the indices (this isn't attached to the VAO (for some reason))
+        indexStream = new StreamBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 4);
+        indexStream.setMode(streamingMode);
+
+    }
+
+    /**
+     * Sets up the vertex attribute pointers of the VAO against whatever buffer is bound to GL_ARRAY_BUFFER
+     * This must be called again whenever the vertex StreamBuffer replaces its buffer object
+     * */
+    private void pointAttributes(){
         int offset = 0;
-        for(String s : parameterNames){
+        for(int index = 0; index < parameterLengths.length; index++){
 //            Setup the VBO with the corresponding attribute pointers
 //            attribute list #, pointSize of element, type of element, isNormalized?, stride (skipping stuff), run spot
-            GL20.glBindAttribLocation(shaderProgram, index, s);
-            GL20.glVertexAttribPointer(index, parameterLengths[index], GL11.GL_FLOAT, false, length * 4, offset * 4);
+            GL20.glVertexAttribPointer(index, parameterLengths[index], GL11.GL_FLOAT, false, vertexSize * 4, offset * 4);
             offset += parameterLengths[index];
-            index++;
         }
-        vertexSize = offset;
+    }
 
+    /**
+     * Selects how this batch streams its vertices and indices to the GPU each frame. The change takes effect on the
+     * next render, so batches can be switched back and forth at runtime to compare the paths against each other.
+     *
+     * @param mode one of STREAM_DATA (the default), STREAM_ORPHAN or STREAM_PERSISTENT
+     *             STREAM_PERSISTENT falls back to STREAM_ORPHAN on contexts without buffer storage support
+     * @see StreamBuffer
+     * */
+    public void setStreamingMode(int mode){
+        streamingMode = mode;
+        if(vertexStream != null){
+            vertexStream.setMode(mode);
+            indexStream.setMode(mode);
+        }
+    }
+    public int getStreamingMode(){
+        return streamingMode;
 
-        // unbind the VBO
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-        // deselect the VAO
-        GL30.glBindVertexArray(0);
-        // Create and bind a VBO for the indices (this isn't attached to the VAO (for some reason))
-        indicesVBOID = GL15.glGenBuffers();
+    }
+
+    /**
+     * Switches this batch into (or out of) retained mode. A retained batch keeps last frame's vertices on the GPU, and
+     * as long as the same DrawingObjects are drawn in the same order, only the objects whose vertices have actually
+     * changed (see DrawingObject#isDirty()) are packed and re-uploaded. A frame where nothing moved costs little more
+     * than a walk over the draw list and a single draw call.
+     *
+     * This suits mostly static scenes like menus. Batches whose objects all change every frame are better off
+     * streaming (see setStreamingMode(int)), which is the default.
+     * @see GlooBatch.Retained
+     * */
+    public void setRetained(boolean retained){
+        isRetained = retained;
 
     }
-    public int describeUniform(String uniform){
-        return GL20.glGetUniformLocation(shaderProgram, uniform);
+    public boolean isRetained(){
+        return isRetained;
+
+    }
+    /**
+     * Sets the policy that decides how many threads this batch's vertices are packed on each frame
+     * Batches start out with an AdaptivePackingPolicy, or PackingPolicy.SINGLE_THREADED if they were made monoThreaded
+     * @see PackingPolicy
+     * */
+    public void setPackingPolicy(PackingPolicy policy){
+        packingPolicy = policy;
+
+    }
+    public PackingPolicy getPackingPolicy(){
+        return packingPolicy;
 
     }
-    public void assignUniform(int type, int location, Buffer value){
+    /**
+     * @return the VertexArena that the vertices of this batch's DrawingObjects live in
+     * (this exists once describeVertices has been called)
+     * */
+    public VertexArena getArena(){
+        return arena;
+
+    }
+    /**
+     * @return a handle for the uniform, to be passed to assignUniform. The handle stays good when the shaders are
+     * linked again (which can move the uniform to a different location)
+     * */
+    public int describeUniform(String uniform){
+        uniformNames.add(uniform);
+        uniformLocations = Arrays.copyOf(uniformLocations, uniformNames.size());
+        uniformLocations[uniformNames.size() - 1] = GL20.glGetUniformLocation(shaderProgram, uniform);
+        return uniformNames.size() - 1;
+    }
+    public void assignUniform(int type, int uniform, Buffer value){
+        useShaders(); // uniforms are set on whichever program is current
+        int location = uniformLocations[uniform];
         value.flip();
         if(value instanceof FloatBuffer){
             Shaders.sendUniformToGPU(type, location, (FloatBuffer)value);
@@ -186,10 +425,33 @@ public abstract class GlooBatch {
     public void render(int primitiveType){
 
         // Bind the default shader
-        GL20.glUseProgram(shaderProgram);
-        // Bind the textureAtlas
+        useShaders();
+        // Bind the textureAtlas (inserting any textures added since the last frame)
+        int atlasHandle = atlas.bindAtlas();
         GL13.glActiveTexture(GL13.GL_TEXTURE0);
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, atlas.handle());
+        GL11.glBindTexture(atlas.target(), atlasHandle);
+
+        // a frame packed ahead of time by prepare() only has to be sent off
+        if(pending != null){
+            submit(pending, primitiveType);
+            pending = null;
+            return;
+        }
+
+        // retained batches skip packing entirely whenever they can
+        if(isRetained){
+            retained.prepare(prepared[back]);
+            retained.submit(prepared[back], primitiveType);
+            batch.clear();
+            return;
+        }
+
+        // figure out where every object lands in the frame before anything is written
+        batch.measure(packingPolicy, opaquePass);
+        if(batch.size == 0 || batch.vertices == 0){ // objects with no vertices leave nothing to draw
+            batch.clear();
+            return;
+        }
 
         // bind to the default VAO and enable the standard VertexAttrib pointers
         GL30.glBindVertexArray(VAOID);
@@ -197,28 +459,175 @@ public abstract class GlooBatch {
         for(int i = 0; i < parameterCount; i++){
             GL20.glEnableVertexAttribArray(i);
         }
-        // Bind to the vertices VBO
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, VBOID);
+
+        long vBytes = 4L * batch.vertices * vertexSize;
+        long iBytes = batch.indexBytes();
+
+        // Bind to the vertices VBO (re-pointing the attributes if the buffer object changed)
+        if(vertexStream.begin(vBytes)){
+            pointAttributes();
+        }
         // Bind to the indices VBO
-        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesVBOID);
+        indexStream.begin(iBytes);
+
+        // when the streams are mapped, the threads pack straight into GPU memory
+        long vOffset = vertexStream.offset();
+        long iOffset = indexStream.offset();
+        batch.target(
+                vertexStream.isMapped() ? vertexStream.reserve(vBytes) : null,
+                indexStream.isMapped() ? indexStream.reserve(iBytes) : null
+        );
 
         //
         batch.render();
         //
-        List<FloatBuffer> vBuffers = batch.vBuffers;
-        List<ShortBuffer> iBuffers = batch.iBuffers;
-        // and finally send the render requests to the GPU to be processed
-        for(int i = 0; i < iBuffers.size(); i++){
-            if(vBuffers.get(i) != null && iBuffers.get(i) != null){
-                GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vBuffers.get(i), GL15.GL_STREAM_DRAW); // send the object vertices to the GPU
-                GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, iBuffers.get(i), GL15.GL_STREAM_DRAW); // send the object indices to the GPU
-                GL11.glDrawElements(primitiveType, iBuffers.get(i).limit(), GL11.GL_UNSIGNED_SHORT, 0); // Draw triangles, number of indices, type of indicesArray, where to run
-            }
+        // and finally send the whole frame to the GPU at once and draw it with a single call
+        if(!vertexStream.isMapped()){
+            vOffset = vertexStream.upload(batch.vTarget); // send the object vertices to the GPU
+        }
+        if(!indexStream.isMapped()){
+            iOffset = indexStream.upload(batch.iTarget); // send the object indices to the GPU
         }
+        draw(primitiveType, batch.indices, batch.opaqueIndices, batch.split, batch.wide, iOffset, (int)(vOffset / (vertexSize * 4)), batch.vertices);
+        vertexStream.end();
+        indexStream.end();
         // reset for the next frame
         batch.clear();
     }
 
+    /**
+     * Packs this frame's DrawingObjects ahead of time, without touching OpenGL, so that it can be done on a thread
+     * other than the rendering thread while the previous frame is being drawn. The DrawList is cleared afterwards,
+     * ready for the next frame's objects.
+     *
+     * A pipelined application prepares a frame, flips it, and then has render(int) draw it while it prepares the
+     * following frame into the other of the two Prepared frames.
+     * @see GlooApplication#setPipelined(boolean)
+     * @see GlooBatch#flip()
+     * */
+    void prepare(){
+        Prepared frame = prepared[back];
+        if(isRetained){
+            retained.prepare(frame);
+        } else {
+            batch.measure(packingPolicy, opaquePass);
+            frame.reserve(4L * batch.vertices * vertexSize, batch.indexBytes());
+            batch.target(frame.vBuffer, frame.iBuffer);
+            batch.render();
+            frame.retained = false;
+            frame.vertices = batch.vTarget;
+            frame.indices = batch.iTarget;
+            frame.indexCount = batch.indices;
+            frame.opaqueCount = batch.opaqueIndices;
+            frame.split = batch.split;
+            frame.vertexCount = batch.vertices;
+            frame.wide = batch.wide;
+        }
+        batch.clear();
+        ready = frame;
+        back = 1 - back;
+    }
+
+    /**
+     * Hands the frame most recently packed by prepare() over to render(int). This must be called on the rendering
+     * thread once prepare() has finished, and before the next prepare() starts.
+     *
+     * Since nothing is being drawn at that point, this is also where streamed Textures swap to their own coordinates,
+     * and where the atlas switches to a new GPU texture
+     * @see TextureAtlas#streamTexture(String)
+     * @see TextureAtlas#landTextures()
+     * */
+    void flip(){
+        pending = ready;
+        ready = null;
+        atlas.landTextures();
+    }
+
+    /** @return true if there is a prepared frame waiting to be drawn by render(int) */
+    boolean hasPending(){
+        return pending != null;
+
+    }
+
+    /** Sends a frame that prepare() has already packed to the GPU and draws it */
+    private void submit(Prepared frame, int primitiveType){
+        if(frame.retained){
+            retained.submit(frame, primitiveType);
+            return;
+        }
+
+        GL30.glBindVertexArray(VAOID);
+        for(int i = 0; i < parameterCount; i++){
+            GL20.glEnableVertexAttribArray(i);
+        }
+
+        long vBytes = 4L * frame.vertices.remaining();
+        long iBytes = (frame.wide ? 4L : 2L) * frame.indices.remaining();
+        if(vertexStream.begin(vBytes)){
+            pointAttributes();
+        }
+        indexStream.begin(iBytes);
+
+        long vOffset;
+        long iOffset;
+        if(vertexStream.isMapped()){
+            vOffset = vertexStream.offset();
+            vertexStream.reserve(vBytes).asFloatBuffer().put(frame.vertices.duplicate()); // one copy into mapped memory
+        } else {
+            vOffset = vertexStream.upload(frame.vertices);
+        }
+        if(indexStream.isMapped()){
+            iOffset = indexStream.offset();
+            ByteBuffer region = indexStream.reserve(iBytes);
+            if(frame.wide){
+                region.asIntBuffer().put(((IntBuffer)frame.indices).duplicate());
+            } else {
+                region.asShortBuffer().put(((ShortBuffer)frame.indices).duplicate());
+            }
+        } else {
+            iOffset = indexStream.upload(frame.indices);
+        }
+
+        draw(primitiveType, frame.indexCount, frame.opaqueCount, frame.split, frame.wide, iOffset, (int)(vOffset / (vertexSize * 4)), frame.vertexCount);
+        vertexStream.end();
+        indexStream.end();
+    }
+
+    /**
+     * Draws the indices of a frame, which start at iOffset in the bound index buffer. Without an opaque pass they are
+     * drawn with a single call, blended however the batch set up. With one, the first opaqueCount of them (the opaque
+     * objects, front to back) are drawn with blending off, and the rest (the translucent objects, back to front) with
+     * blending on and depth writes off
+     * @see GlooBatch#setOpaquePass(boolean)
+     *
+     * @param baseVertex the vertex in the vertex buffer that index 0 refers to
+     * @param vertexCount the number of vertices in the frame, which ORDERED shaders spread their depths over
+     * */
+    private void draw(int primitiveType, int indexCount, int opaqueCount, boolean split, boolean wide, long iOffset, int baseVertex, int vertexCount){
+        if(indexCount == 0){
+            return;
+        }
+        if(orderLocation != -1){
+            GL20.glUniform2f(orderLocation, baseVertex, 1f / vertexCount);
+        }
+        // Draw triangles, number of indices, type of indicesArray, where to run, which vertex index 0 refers to
+        int type = wide ? GL11.GL_UNSIGNED_INT : GL11.GL_UNSIGNED_SHORT;
+        if(!split){
+            GL32.glDrawElementsBaseVertex(primitiveType, indexCount, type, iOffset, baseVertex);
+            return;
+        }
+        if(opaqueCount > 0){
+            GL11.glDisable(GL11.GL_BLEND);
+            GL32.glDrawElementsBaseVertex(primitiveType, opaqueCount, type, iOffset, baseVertex);
+            GL11.glEnable(GL11.GL_BLEND);
+        }
+        if(opaqueCount < indexCount){
+            GL11.glDepthMask(false);
+            GL32.glDrawElementsBaseVertex(primitiveType, indexCount - opaqueCount, type, iOffset + (wide ? 4L : 2L) * opaqueCount, baseVertex);
+            GL11.glDepthMask(true); // the depth buffer is only cleared where depth writes are on
+        }
+    }
+
 //    /**
 //     * Adds a drawing object to a channel in the Batch by passing it on to the hidden Batch method
 //     * Takes
@@ -231,6 +640,11 @@ public abstract class GlooBatch {
 
     }
     public final boolean destroy(){
+        if(vertexStream != null){
+            vertexStream.destroy(); // unmaps the persistent ring and deletes its fences
+            indexStream.destroy();
+        }
+        retained.destroy();
         atlas.destroy();
         app().getPool().destroy();
         return this == core.ripBatch(handle);
@@ -240,130 +654,491 @@ public abstract class GlooBatch {
 
     }
 
-    /** 
-     * A Batch is a collection of sub-batches (which are referenced by channels)
-     * Batch is basically a list of list of drawing objects
-     *      Each list of drawing objects is a sub-batch (channel)
+    /**
+     * Writes the vertices of a DrawingObject into a vertex buffer and its indices, shifted by iWalk, into an index
+     * buffer (iWalk being the number of vertices already in the vertex buffer ahead of this object)
+     * The index buffer is either a ShortBuffer or, once there are too many vertices for 16 bits, an IntBuffer
+     * If iBuffer is null, only the vertices are written
+     * */
+    private void pack(DrawingObject O, FloatBuffer vBuffer, Buffer iBuffer, int iWalk){
+        int[] indices = O.indexData();
+        int indexCount = O.indexCount();
+        if(iBuffer instanceof ShortBuffer){
+            ShortBuffer shorts = (ShortBuffer)iBuffer;
+            for(int j = 0; j < indexCount; j++){
+                shorts.put((short)(indices[j] + iWalk)); // ... and addBatch the indices to the indices buffer
+            }
+        } else if(iBuffer instanceof IntBuffer){
+            IntBuffer ints = (IntBuffer)iBuffer;
+            for(int j = 0; j < indexCount; j++){
+                ints.put(indices[j] + iWalk);
+            }
+        }
+        int count = O.vertices().size();
+        if(count > 0){
+            vBuffer.put(O.vertexData(), O.vertexOffset(), count * vertexSize); // ... and copy the vertices over in one go
+        }
+    }
+
+    /**
+     * A Batch is the list of drawing objects to be drawn this frame, along with the buffers they are packed into
      *
-     * In addition to containing the batches, they also hold lists of vertices and indices buffers
+     * The whole frame is packed into one vertex buffer and one index buffer (or straight into mapped GPU memory) so
+     * that it can be sent with a single upload and drawn with a single draw call. To let several threads pack at once
+     * without any synchronization, measure() first works out, with a prefix sum over the objects' vertex and index
+     * counts, exactly where each object's vertices and indices will land. Each thread then packs a contiguous run of
+     * objects (a slice) into its own disjoint part of the buffers, shifting each object's indices by the number of
+     * vertices ahead of it in the frame.
      *
-     * When an object is added to a batch, it must be added to a particular channel
-     * This allows for multithreading to occur as each thread can addBatch a processed drawing object
-     * to a particular channel that no other thread is modifying (thereby avoiding synchronization!)
+     * The vertices are always packed in draw order. With an opaque pass (see GlooBatch#setOpaquePass(boolean)) only the
+     * indices are arranged differently: those of the opaque objects come first, in draw order, and those of the
+     * translucent objects after them, in reverse draw order.
      *
-     * Note that while the channels get reset each frame, the buffers persist, ensuring that the game runs faster
+     * Note that the objects and the buffers persist between frames (they are only cleared), ensuring that the game runs faster
      * */
     private class Batch{
 
         Worker batchPool;
-        LinkedList<DrawingObject> batch;
-        List<FloatBuffer> vBuffers = new ArrayList<>();
-        List<ShortBuffer> iBuffers = new ArrayList<>();
+        DrawList batch;
+        // client side buffers the frame is packed into when the streams are not mapped
+        ByteBuffer vBuffer;
+        ByteBuffer iBuffer;
+
+        // bookkeeping for the current frame (see measure)
+        int size; // number of objects
+        int vertices; // vertices in the whole frame
+        int indices; // indices in the whole frame
+        boolean wide; // whether the frame needs 32 bit indices
+        boolean split; // whether the indices are arranged into an opaque pass and a translucent pass
+        int opaqueIndices; // the indices of the opaque pass, which come first (0 if the frame is not split)
+        int[] vStarts = new int[1]; // the first vertex of each object in the frame (vStarts[size] == vertices)
+        int[] iStarts = new int[1]; // the first index of each object in the frame (iStarts[size] == indices)
+        boolean[] opaque = new boolean[1]; // whether each object is in the opaque pass
+        int threads;
+        int[] slices = new int[2]; // the first object of each thread's slice (slices[threads] == size)
+        long[] nanos = new long[1]; // how long each thread took to pack its slice
+        // the buffers the frame is packed into (see target)
+        FloatBuffer vTarget;
+        Buffer iTarget;
 
         /**
-         * Constructs a Batch with no channels open,
-         * no sub-batches, and empty vertices and indices buffers
+         * Constructs a Batch with no drawing objects and no buffers yet
          * */
         Batch(Worker pool){
             batchPool = pool;
-            batch = new LinkedList<>();
-            vBuffers.add(null);
-            iBuffers.add(null);
+            batch = new DrawList();
         }
 
-
-//        /**
-//         * Adds a drawing object to a particular channel in the batch
-//         * Takes
-//         * @param channel an integer corresponding to the channel the object will be added
-//         * @param O a DrawingObject that is a collection of vertices
-//         * (that must be the same type as the vertices of the implemented GlooBatch)
-//         * */
+        /**
+         * Adds a drawing object to the batch
+         * @param O a DrawingObject that is a collection of vertices
+         * (that must be the same type as the vertices of the implemented GlooBatch)
+         * */
         void add(DrawingObject O){
-            batch.addFirst(O);
+            batch.add(O);
 
         }
 
         /**
-         * Clear each of the sub-batches (clear each of the lists of drawing objects)
+         * Clears the list of drawing objects for the next frame
          *
-         * Also resets the number of open channels to 0
+         * The DrawList keeps its backing array, so this does not allocate
+         * @see DrawList#clear()
          * */
         void clear(){
-            batch = new LinkedList<>();
+            batch.clear();
+            vTarget = null;
+            iTarget = null;
+        }
 
+        /**
+         * Works out where every object's vertices and indices will land in the frame, then decides how many threads
+         * will pack the frame and splits the objects into that many slices of roughly equal numbers of vertices
+         *
+         * @param policy the PackingPolicy that picks the number of threads from the size of the frame
+         * @param split whether to arrange the indices into an opaque pass and a translucent pass
+         * */
+        void measure(PackingPolicy policy, boolean split){
+            size = batch.size();
+            if(vStarts.length < size + 1){
+                vStarts = new int[(size + 1) * 2];
+                iStarts = new int[(size + 1) * 2];
+                opaque = new boolean[(size + 1) * 2];
+            }
+            int vWalk = 0;
+            int iWalk = 0;
+            int opaqueWalk = 0;
+            for(int i = 0; i < size; i++){ // the prefix sums of the vertex and index counts
+                DrawingObject O = batch.get(i);
+                vStarts[i] = vWalk;
+                iStarts[i] = iWalk;
+                opaque[i] = split && O.isOpaque(); // read only once, so the two passes always agree
+                vWalk += O.vertices().size();
+                iWalk += O.indexCount();
+                if(opaque[i]){
+                    opaqueWalk += O.indexCount();
+                }
+            }
+            vStarts[size] = vWalk;
+            iStarts[size] = iWalk;
+            vertices = vWalk;
+            indices = iWalk;
+            wide = vertices > 0x10000; // 16 bit indices can only reach 65536 vertices
+
+            this.split = split;
+            opaqueIndices = opaqueWalk;
+            if(split){ // the opaque objects' indices go first, front to back, and then the translucent objects', back to front
+                int front = 0;
+                int back = opaqueWalk;
+                for(int i = size - 1; i >= 0; i--){
+                    int count = batch.get(i).indexCount();
+                    if(!opaque[i]){
+                        iStarts[i] = back;
+                        back += count;
+                    }
+                }
+                for(int i = 0; i < size; i++){
+                    if(opaque[i]){
+                        iStarts[i] = front;
+                        front += batch.get(i).indexCount();
+                    }
+                }
+            }
+
+            threads = 0;
+            if(size > 0){ // every thread gets at least one object, and a non-empty frame gets at least one thread
+                threads = Math.max(1, Math.min(policy.threads(size, vertices * vertexSize, batchPool.size()), size));
+            }
+            if(slices.length < threads + 1){
+                slices = new int[threads + 1];
+                nanos = new long[threads];
+            }
+            int object = 0;
+            for(int t = 0; t < threads; t++){
+                long goal = (long)vertices * t / threads; // the first vertex this slice should start at
+                while(object < size && vStarts[object] < goal){
+                    object += 1;
+                }
+                slices[t] = object;
+            }
+            slices[threads] = size;
+        }
+
+        /** @return the number of bytes of indices in the frame */
+        long indexBytes(){
+            return (wide ? 4L : 2L) * indices;
+
+        }
+
+        /**
+         * Sets the memory the frame will be packed into
+         * Either region may be null, in which case the batch's own client side buffer is used (grown to fit if need be)
+         *
+         * @param vRegion at least 4 * vertices * vertexSize bytes for the vertices, or null
+         * @param iRegion at least indexBytes() bytes for the indices, or null
+         * */
+        void target(ByteBuffer vRegion, ByteBuffer iRegion){
+            long vBytes = 4L * vertices * vertexSize;
+            long iBytes = indexBytes();
+            if(vRegion == null){
+                if(vBuffer == null || vBytes > vBuffer.capacity()){ // if vBytes exceeds the buffer capacity, double the new needed capacity
+                    vBuffer = BufferUtils.createByteBuffer((int)vBytes * 2);
+                }
+                vRegion = vBuffer;
+            }
+            if(iRegion == null){
+                if(iBuffer == null || iBytes > iBuffer.capacity()){ // if iBytes exceeds the buffer capacity, double the new needed capacity
+                    iBuffer = BufferUtils.createByteBuffer((int)iBytes * 2);
+                }
+                iRegion = iBuffer;
+            }
+            vRegion.clear();
+            iRegion.clear();
+            vTarget = vRegion.asFloatBuffer();
+            vTarget.limit(vertices * vertexSize);
+            iTarget = wide ? iRegion.asIntBuffer() : iRegion.asShortBuffer();
+            iTarget.limit(indices);
         }
 
         /**
-         * Makes a series of tasks (threads) equal in number to the number of open channels
-         * Each task is a lambda function to the render(int index) call immediately below
+         * Packs every slice by handing the render(int index) call immediately below to the ThreadPool as a
+         * parallelFor, so the rendering thread packs slices too rather than waiting on the pool
          * @see GlooBatch.Batch#render(int)
+         * @see Worker#parallelFor(int, java.util.function.IntConsumer)
          *
-         * After making the list of tasks, they get sent to the ThreadPool (as blocking threads)
+         * Afterwards, the targets hold the whole frame, ready to be sent to the GPU
          * */
         void render(){
-            int threads = monoThreaded ? 1 : (int)Math.min((float)batch.size()/batchPool.size(), batchPool.size());
-            Runnable[] tasks = new Runnable[threads];
-            while(vBuffers.size() < threads){vBuffers.add(null);}
-            while(iBuffers.size() < threads){iBuffers.add(null);}
-            for(int i = 0; i < tasks.length; i++){
-                int index = i;
-                tasks[i] = (() -> render(index, threads));
+            long start = System.nanoTime();
+            batchPool.parallelFor(threads, this::render);
+            long wall = System.nanoTime() - start;
+
+            long work = 0;
+            for(int i = 0; i < threads; i++){
+                work += nanos[i];
             }
-            batchPool.await(batchPool.task(tasks));
+            packingPolicy.measured(threads, vertices * vertexSize, wall, work);
         }
 
         /**
          * This render call is the one that actually does things! (Congrats on getting here)
          * It is only called by virtue of a lambda function through a thread
          *
-         * First, it gets the batch, vertices buffer, and indices buffer of its channel
-         * Then, it cycles through each drawing object in the batch and increments the pointSize of the buffers
-         *  to account for each new object
-         * After that, it cycles though each drawing object and adds its vertices and indices to the vertices and indices buffers
-         * Finally, it flips the buffers so that they are ready to be sent to the GPU
+         * It packs one slice of objects into the targets, at the places measure() worked out for each object of the
+         * slice. It works through its own views of the targets, so slices never disturb one another,
+         * and leaves the targets themselves as they were: positioned at 0 and limited to the whole frame
          * */
-        void render(int index, int step){
-            // references used throughout the render call
-            FloatBuffer vBuffer = vBuffers.get(index);
-            ShortBuffer iBuffer = iBuffers.get(index);
-            // ensure buffer capacity
-            int vSize = 0;
-            int iSize = 0;
-            //////////////
-            for(int i = index; i < batch.size(); i += step){ // cycle through each drawing object and increment the pointSize of the buffers to fit the object
-                vSize += batch.get(i).vertices().size() * vertexSize * 4;
-                iSize += batch.get(i).indices().size();
-            }/////////////
-            if(vBuffer == null || vSize > vBuffer.capacity()){ // if vSize exceeds the buffer capacity, double the new needed capacity
-                vBuffers.set(index, BufferUtils.createFloatBuffer(vSize * 2));
-                vBuffer = vBuffers.get(index);
-            }/////////////
-            if(iBuffer == null || iSize > iBuffer.capacity()){ // if iSize exceeds the buffer capacity, double the new needed capacity
-                iBuffers.set(index, BufferUtils.createShortBuffer(iSize * 2));
-                iBuffer = iBuffers.get(index);
-            }/////////////
-            vBuffer.limit(vBuffer.capacity()); // manually sets the buffer limit equal to capacity
-            iBuffer.limit(iBuffer.capacity()); // manually sets the buffer limit equal to capacity
-            // load objects into buffers
-            short iWalk = 0;
+        void render(int index){
+            long start = System.nanoTime();
+            int first = slices[index];
+            int last = slices[index + 1];
+            // this thread's own views of the targets, positioned at the start of its slice
+            FloatBuffer vBuffer = vTarget.duplicate();
+            vBuffer.position(vStarts[first] * vertexSize);
+            Buffer iBuffer = wide ? ((IntBuffer)iTarget).duplicate() : ((ShortBuffer)iTarget).duplicate();
             //////////////
-            DrawingObject O;
-            for(int i = index; i < batch.size(); i += step){ // cycle through each object in the batch...
-                O = batch.get(i);
-                for(short j : O.indices()){
-                    iBuffer.put((short)(j + iWalk)); // ... and addBatch the indices to the indices buffer
+            for(int i = first; i < last; i++){ // cycle through each object in the slice...
+                DrawingObject O = batch.get(i);
+                O.markClean(); // a retained batch only needs to re-send objects that change after this
+                iBuffer.position(iStarts[i]); // in draw order, unless the frame is split into passes
+                pack(O, vBuffer, iBuffer, vStarts[i]);
+            }//////////////
+            nanos[index] = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * A Prepared is one packed frame of this batch: everything needed to send the frame to the GPU and draw it, and
+     * nothing that would have to be read back out of the DrawingObjects (which may already be changing for the
+     * next frame). A batch keeps two, so that one can be drawn while the other is being packed.
+     * */
+    private class Prepared {
+
+        // client side memory the frame is packed into
+        ByteBuffer vBuffer;
+        ByteBuffer iBuffer;
+        // views of the packed data, positioned at 0 and limited to what was packed
+        FloatBuffer vertices;
+        Buffer indices;
+        int indexCount;
+        int opaqueCount; // the indices of the opaque pass, which come first
+        boolean split; // whether the frame is drawn in an opaque pass and a translucent pass
+        int vertexCount;
+        boolean wide;
+
+        // retained frames only (see Retained)
+        boolean retained;
+        boolean full; // whether the retained buffers are replaced outright, rather than patched
+        int[] runs = new int[8]; // pairs of (first float in the VBO, number of floats), packed back to back in vertices
+        int runCount;
+
+        /** Grows the client side memory (to double what is needed) if it cannot hold the given number of bytes */
+        void reserve(long vBytes, long iBytes){
+            if(vBuffer == null || vBytes > vBuffer.capacity()){
+                vBuffer = BufferUtils.createByteBuffer((int)vBytes * 2);
+            }
+            if(iBuffer == null || iBytes > iBuffer.capacity()){
+                iBuffer = BufferUtils.createByteBuffer((int)iBytes * 2);
+            }
+        }
+
+        /** Records a run of floats to patch into the retained VBO */
+        void addRun(int first, int floats){
+            if(2 * runCount + 2 > runs.length){
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            runs[2 * runCount] = first;
+            runs[2 * runCount + 1] = floats;
+            runCount += 1;
+        }
+    }
+
+    /**
+     * Retained holds the GPU copy of a retained batch (see GlooBatch#setRetained(boolean))
+     *
+     * It remembers the layout of the last frame it uploaded: which DrawingObjects were drawn, in what order, and where
+     * each one's vertices and indices landed in its buffers. When a frame comes in with the same layout, only the
+     * dirty objects are repacked, and each run of neighbouring dirty objects is sent with one glBufferSubData. When the
+     * layout differs (something was added, removed, reordered, or gained vertices), the whole frame is packed by the
+     * Batch, exactly as a streamed frame would be, and uploaded again, and the new layout is remembered.
+     *
+     * Packing (prepare) and uploading (submit) are kept apart, with everything in between held by a Prepared, so that
+     * a pipelined application can pack the next frame while this one is still being sent.
+     *
+     * The retained buffers have their own VAO, so they never disturb the streaming buffers.
+     * */
+    private class Retained {
+
+        int VAO;
+        int VBO;
+        int IBO;
+
+        // the layout of the last packed frame
+        DrawingObject[] layout = new DrawingObject[0];
+        int[] vStarts = new int[1]; // first vertex of each object (vStarts[size] == vertexCount)
+        int[] iCounts = new int[0]; // number of indices of each object
+        boolean[] opaque = new boolean[0]; // whether each object is in the opaque pass
+        int size;
+        int vertexCount;
+        int indexCount;
+        int opaqueCount;
+        boolean split; // whether the layout is arranged into an opaque pass and a translucent pass
+        boolean wideIndices; // whether the layout has too many vertices for 16 bit indices
+
+        /**
+         * Packs whatever this frame's DrawList needs to send into the given Prepared: every dirty object, if the layout
+         * is the same as last frame, or else the whole frame
+         * */
+        void prepare(Prepared frame){
+            DrawList list = batch.batch;
+            frame.retained = true;
+            if(sameLayout(list)){
+                update(frame);
+            } else {
+                upload(frame);
+            }
+            frame.indexCount = indexCount;
+            frame.opaqueCount = opaqueCount;
+            frame.split = split;
+            frame.vertexCount = vertexCount;
+            frame.wide = wideIndices;
+        }
+
+        /**
+         * Sends a Prepared frame to the retained buffers, and draws them
+         * */
+        void submit(Prepared frame, int primitiveType){
+            if(VAO == 0){
+                VAO = GL30.glGenVertexArrays();
+                VBO = GL15.glGenBuffers();
+                IBO = GL15.glGenBuffers();
+                GL30.glBindVertexArray(VAO);
+                GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, VBO);
+                pointAttributes();
+            }
+            GL30.glBindVertexArray(VAO);
+            for(int i = 0; i < parameterCount; i++){
+                GL20.glEnableVertexAttribArray(i);
+            }
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, VBO);
+            GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, IBO);
+
+            if(frame.full){
+                GL15.glBufferData(GL15.GL_ARRAY_BUFFER, frame.vertices, GL15.GL_DYNAMIC_DRAW);
+                if(frame.indices instanceof IntBuffer){
+                    GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, (IntBuffer)frame.indices, GL15.GL_DYNAMIC_DRAW);
+                } else {
+                    GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, (ShortBuffer)frame.indices, GL15.GL_DYNAMIC_DRAW);
+                }
+            } else {
+                FloatBuffer run = frame.vertices.duplicate();
+                int walk = 0;
+                for(int i = 0; i < frame.runCount; i++){
+                    int floats = frame.runs[2 * i + 1];
+                    run.limit(walk + floats);
+                    run.position(walk);
+                    GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, 4L * frame.runs[2 * i], run);
+                    walk += floats;
+                }
+            }
+
+            draw(primitiveType, frame.indexCount, frame.opaqueCount, frame.split, frame.wide, 0, 0, frame.vertexCount);
+        }
+
+        /** Deletes the retained buffers and their VAO, if they were ever made */
+        void destroy(){
+            if(VAO != 0){
+                GL30.glDeleteVertexArrays(VAO);
+                GL15.glDeleteBuffers(VBO);
+                GL15.glDeleteBuffers(IBO);
+                VAO = 0;
+            }
+        }
+
+        /**
+         * @return true if the list holds the same objects, in the same order and with the same sizes, as last frame (and
+         * in the same passes)
+         * */
+        private boolean sameLayout(DrawList list){
+            if(list.size() != size || split != opaquePass){
+                return false;
+            }
+            for(int i = 0; i < size; i++){
+                DrawingObject O = list.get(i);
+                if(O != layout[i] || O.indexCount() != iCounts[i] || (split && O.isOpaque() != opaque[i])){
+                    return false;
+                }
+                if(O.vertices().size() != vStarts[i + 1] - vStarts[i]){
+                    return false;
                 }
-                for(Vertex v: O.vertices()){
-                    for(float f : v.attributes()){
-                        vBuffer.put(f); // ... and addBatch the vertices to the vertices buffer
+            }
+            return true;
+        }
+
+        /**
+         * Packs the vertices of every dirty object back to back into the frame, recording each run of neighbouring
+         * dirty objects so that it can be sent with a single upload
+         * */
+        private void update(Prepared frame){
+            frame.full = false;
+            frame.runCount = 0;
+            frame.reserve(4L * vertexCount * vertexSize, 0);
+            frame.vBuffer.clear();
+            FloatBuffer vBuffer = frame.vBuffer.asFloatBuffer();
+
+            int run = -1; // the first object of the current run of dirty objects, or -1 if there isn't one
+            for(int i = 0; i <= size; i++){
+                boolean dirty = i < size && layout[i].isDirty();
+                if(dirty){
+                    if(run == -1){
+                        run = i;
                     }
+                    layout[i].markClean(); // cleaned before packing, so a change made mid-pack is caught next frame
+                    pack(layout[i], vBuffer, null, 0);
+                } else if(run != -1){
+                    frame.addRun(vStarts[run] * vertexSize, (vStarts[i] - vStarts[run]) * vertexSize);
+                    run = -1;
                 }
-                iWalk += O.vertices().size();
-            }//////////////
-            iBuffer.flip(); // ALWAYS FLIP THE BUFFERS!!!! (Feel my pain)
+            }
             vBuffer.flip();
-            // sending data to the GPU is then handled above
+            frame.vertices = vBuffer;
+        }
+
+        /**
+         * Has the Batch pack the whole frame into the Prepared, remembering its layout for the following frames
+         * Layouts with more vertices than 16 bit indices can address are packed with 32 bit indices instead
+         * */
+        private void upload(Prepared frame){
+            batch.measure(packingPolicy, opaquePass);
+            frame.reserve(4L * batch.vertices * vertexSize, batch.indexBytes());
+            batch.target(frame.vBuffer, frame.iBuffer);
+            batch.render();
+            frame.full = true;
+            frame.vertices = batch.vTarget;
+            frame.indices = batch.iTarget;
+
+            size = batch.size;
+            if(layout.length < size){
+                layout = new DrawingObject[size * 2];
+                vStarts = new int[size * 2 + 1];
+                iCounts = new int[size * 2];
+                opaque = new boolean[size * 2];
+            }
+            for(int i = 0; i < size; i++){
+                layout[i] = batch.batch.get(i);
+                vStarts[i] = batch.vStarts[i];
+                iCounts[i] = layout[i].indexCount();
+                opaque[i] = batch.opaque[i];
+            }
+            vStarts[size] = batch.vertices;
+            for(int i = size; i < layout.length && layout[i] != null; i++){
+                layout[i] = null; // let go of objects that are no longer drawn
+            }
+            vertexCount = batch.vertices;
+            indexCount = batch.indices;
+            opaqueCount = batch.opaqueIndices;
+            split = batch.split;
+            wideIndices = batch.wide;
         }
     }
 }
@@ -9,11 +9,60 @@ import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.font.LineMetrics;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 
 public final class GlooCharacter {
 
+    /* How a new character reaches the TextureAtlas */
+    static final int ADD = 0; // added on its own, as soon as it is rasterized
+    static final int STREAM = 1; // streamed in, for a character made while the atlas may be drawing @see GlooCharacter#isReady()
+    static final int DEFER = 2; // left for GlooFontFamily to add along with the rest of its set @see GlooCharacter#place(Texture)
+
+    /* The image (and graphics) each thread rasterizes its glyphs into, rather than a new one for every glyph */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * A thread's scratch image, grown to fit the largest glyph it has rasterized. Each glyph is drawn in white onto black
+     * into the top left corner (clipped to the size of the glyph, so nothing is left behind outside it), which leaves
+     * the coverage of every pixel as its gray, and is read straight out of the image's own byte[], with no copy through
+     * getRGB: as it is into a single channel atlas, and as white with the coverage for alpha into an RGBA one
+     * */
+    private static final class Scratch {
+        BufferedImage image;
+        Graphics2D graphics;
+        byte[] data;
+        int[] row;
+
+        Graphics2D fit(int width, int height){
+            if (image == null || image.getWidth() < width || image.getHeight() < height) {
+                if (graphics != null) {
+                    graphics.dispose();
+                }
+                int w = image == null ? Math.max(width, 64) : Math.max(width, image.getWidth());
+                int h = image == null ? Math.max(height, 64) : Math.max(height, image.getHeight());
+                image = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+                graphics = image.createGraphics();
+                graphics.setColor(Color.WHITE);
+                data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                row = new int[w];
+            }
+            int stride = image.getWidth();
+            for (int y = 0; y < height; y++) {
+                Arrays.fill(data, y * stride, y * stride + width, (byte) 0); // clear the corner the glyph goes in
+            }
+            graphics.setClip(0, 0, width, height);
+            return graphics;
+        }
+    }
+
     private Texture texture;
+    private ByteBuffer pixels; // the rasterized glyph, until a DEFER character is placed
+    private int pixelWidth;
+    private int pixelHeight;
     private Vector offset;
     private float advance;
     public final float pointSize;
@@ -23,10 +72,19 @@ public final class GlooCharacter {
 //    private float baselineHeight;
 
     public GlooCharacter (FontRenderContext fontRenderContext, Font font, GlooFontFamily fontFamily, int character, boolean antiAlias) {
+        this(fontRenderContext, font, fontFamily, character, antiAlias, ADD);
+
+    }
+
+    /**
+     * @param character the code point of the character (a surrogate pair for code points past the Basic Multilingual Plane)
+     * @param insertion how the character reaches the atlas: ADD, STREAM or DEFER
+     * */
+    GlooCharacter (FontRenderContext fontRenderContext, Font font, GlooFontFamily fontFamily, int character, boolean antiAlias, int insertion) {
 
         long currentTime = System.nanoTime();
 
-        char[] chars = new char[]{(char) character}; // this must be converted from an int to a char[] for getting the glyphVector
+        char[] chars = Character.toChars(character); // this must be converted from an int to a char[] for getting the glyphVector
 //        String charString = new String(chars);
 
 
@@ -67,9 +125,10 @@ public final class GlooCharacter {
         advance = width;
         pointSize = fontFamily.pointSize;
 
-        fontFamily.setLineHeight(lineMetrics.getHeight());
-        fontFamily.setCharHeight(lineMetrics.getAscent());
-        fontFamily.setBaseHeight(lineMetrics.getDescent() - lineMetrics.getLeading());
+        float scale = fontFamily.scale(); // distance fields are baked small, and laid out at the size of the family
+        fontFamily.setLineHeight(lineMetrics.getHeight() * scale);
+        fontFamily.setCharHeight(lineMetrics.getAscent() * scale);
+        fontFamily.setBaseHeight((lineMetrics.getDescent() - lineMetrics.getLeading()) * scale);
 
 //        System.out.println(lineMetrics.getHeight());
 //        System.out.println(lineMetrics.getDescent());
@@ -77,6 +136,7 @@ public final class GlooCharacter {
 //        System.out.println(lineMetrics.getLeading());
 
         ByteBuffer buffer;
+        boolean coverage = fontFamily.textureAtlas.isSingleChannel(); // whether the atlas takes coverage alone, a byte per pixel
 
         if (width <= 0 || height <= 0) {
             // if the width or height is (less than or)equal to 0, then we need to construct a nearly empty buffer directly
@@ -90,42 +150,127 @@ public final class GlooCharacter {
             buffer.flip(); //FOR THE LOVE OF GOD DO NOT FORGET THIS
 
 
+        } else if (fontFamily.isDistanceField()) {
+            // the field reaches SPREAD pixels past the outline, so the glyph (and its quad) grows by that much all round
+            int spread = DistanceField.SPREAD;
+            Shape outline = glyphVector.getOutline(spread - (int) xOffset, spread + height - startY); // where drawGlyphVector would draw it, moved in by the spread
+            width += 2 * spread;
+            height += 2 * spread;
+            buffer = DistanceField.render(outline, width, height, coverage);
+            offset = new Vector(offset.x() - spread, offset.y() - spread, 0);
+            size = new Vector(width, height, 0);
+
         } else {
 
-            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR); // create a buffered image of the right pointSize
-            Graphics2D graphics2D = image.createGraphics(); // get the graphics of the image
+            Scratch scratch = SCRATCH.get();
+            Graphics2D graphics2D = scratch.fit(width, height); // get this thread's graphics, cleared for a glyph of this size
+
+            graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antiAlias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
 
-            if (antiAlias) { // enable antiAliasing if it is set above
-                graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics2D.drawGlyphVector(glyphVector, -(int) xOffset, height - startY); // draw the glyph vector using the graphics2D
+
+            int stride = scratch.image.getWidth();
+            if (coverage) {
+                // the gray is the coverage, so each row goes into the buffer as it is
+                buffer = BufferUtils.createByteBuffer(width * height);
+                for (int y = 0; y < height; y++) {
+                    buffer.put(scratch.data, y * stride, width);
+                }
+                buffer.flip();
+            } else {
+                buffer = BufferUtils.createByteBuffer(width * height * 4); //4 for RGBA, 3 for RGB
+
+                // each gray becomes white with the gray for alpha, written a row at a time as little endian RGBA ints
+                IntBuffer rgba = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                int[] row = scratch.row;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        row[x] = scratch.data[y * stride + x] << 24 | 0xFFFFFF;
+                    }
+                    rgba.put(row, 0, width);
+                }
             }
 
-            graphics2D.setFont(font); // set the plainFont of the graphics2D
+        }
 
-            graphics2D.drawGlyphVector(glyphVector, -(int) xOffset, height - startY); // draw the glyph vector using the graphics2D
+        offset = new Vector(offset.x() * scale, offset.y() * scale, 0);
+        size = new Vector(size.x() * scale, size.y() * scale, 0);
+        advance *= scale;
 
+        // Now that we have a buffer, we can send it off to the TextureAtlas
+        if (insertion == STREAM) {
+            texture = fontFamily.textureAtlas.streamTexture(buffer, width, height);
+        } else if (insertion == DEFER) {
+            pixels = buffer;
+            pixelWidth = width;
+            pixelHeight = height;
+        } else {
+            int textureID = fontFamily.textureAtlas.addTexture(buffer, width, height);
+            texture = fontFamily.textureAtlas.getTexture(textureID);
+        }
+    }
 
-            int[] pixels = new int[width * height];
-            image.getRGB(0, 0, width, height, pixels, 0, width);
+    /**
+     * Constructs a DEFER character from what a FontCache says about it, with no AWT font at all
+     * @see FontCache
+     *
+     * @param pixels the glyph's pixels, pixelWidth by pixelHeight of them (RGBA, or coverage in a single channel atlas)
+     * */
+    GlooCharacter (GlooFontFamily fontFamily, float x, float y, float w, float h, float advance, ByteBuffer pixels, int pixelWidth, int pixelHeight) {
+        this.offset = new Vector(x, y, 0);
+        this.size = new Vector(w, h, 0);
+        this.advance = advance;
+        this.pointSize = fontFamily.pointSize;
+        this.pixels = pixels;
+        this.pixelWidth = pixelWidth;
+        this.pixelHeight = pixelHeight;
+    }
 
-            buffer = BufferUtils.createByteBuffer(width * height * 4); //4 for RGBA, 3 for RGB
+    /* The rasterized glyph of a DEFER character, for GlooFontFamily to add to the atlas */
+    final ByteBuffer pixels(){
+        return pixels;
 
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int pixel = pixels[y * width + x];
-                    buffer.put((byte) ((pixel >> 16) & 0xFF)); // Red   component
-                    buffer.put((byte) ((pixel >>  8) & 0xFF)); // Green component
-                    buffer.put((byte) ((pixel >>  0) & 0xFF)); // Blue  component
-                    buffer.put((byte) ((pixel >> 24) & 0xFF)); // Alpha component
-                }
-            }
+    }
+    final int pixelWidth(){
+        return pixelWidth;
 
-            buffer.flip(); // don't forget to flip the buffer
+    }
+    final int pixelHeight(){
+        return pixelHeight;
 
-        }
+    }
+
+    /* What GlooFontFamily writes to a FontCache */
+    final Texture texture(){
+        return texture;
+
+    }
+    final Vector offset(){
+        return offset;
+
+    }
+    final Vector size(){
+        return size;
+
+    }
+    final float advance(){
+        return advance;
+
+    }
+
+    /** Gives a DEFER character the Texture its pixels were added to the atlas as @see TextureAtlas#addTextures */
+    final void place(Texture texture){
+        this.texture = texture;
+        pixels = null;
+    }
+
+    /**
+     * @return false while a character made on demand is waiting for the next bind to upload it (its texture coordinates
+     * are those of the "null" texture until then, and the atlas generation changes once they are its own)
+     * */
+    public boolean isReady(){
+        return texture.isLanded();
 
-        // Now that we have a buffer, we can send it off to the TextureAtlas
-        int textureID = fontFamily.textureAtlas.addTexture(buffer, width, height);
-        texture = fontFamily.textureAtlas.getTexture(textureID);
     }
     // TODO none of these should be pointSize specific... labels should just need to know their font
     public float advance(float pointSize){
@@ -164,4 +309,8 @@ public final class GlooCharacter {
         return texture.V();
 
     }
+    public int layer(){
+        return texture.layer();
+
+    }
 }
@@ -32,6 +32,8 @@ public class GlooCore {
 
     private Worker pool;
 
+    private volatile long frame; // the number of frames rendered so far
+
     public GlooCore(){
 
     }
@@ -52,6 +54,40 @@ public class GlooCore {
      * Once the batches are all rendered, the buffers are swapped and the batchQueue reset
      * */
     public void renderFrame(int w, int h){
+        renderFrame(w, h, false);
+
+    }
+
+    /**
+     * Packs the next frame of every batch ahead of time (see GlooBatch#prepare()). This does not touch OpenGL, so a
+     * pipelined GlooApplication calls it on a worker thread while the rendering thread is drawing the previous frame.
+     * */
+    public void prepareFrame(){
+        for(int i = 0; i < batchQueue.size(); i++){
+            batchQueue.peek(i).prepare();
+        }
+    }
+
+    /**
+     * Hands the frame packed by the last prepareFrame() over to the rendering thread. This must be called on the
+     * rendering thread, after prepareFrame() has finished and before the next one starts
+     * */
+    public void flipFrame(){
+        for(int i = 0; i < batchQueue.size(); i++){
+            batchQueue.peek(i).flip();
+        }
+    }
+
+    /**
+     * Draws the frame handed over by the last flipFrame(), exactly as renderFrame(int, int) would, except that batches
+     * only send what was already packed (and batches with nothing prepared are skipped)
+     * */
+    public void submitFrame(int w, int h){
+        renderFrame(w, h, true);
+
+    }
+
+    private void renderFrame(int w, int h, boolean prepared){
         // clear the color buffer (draw the background over the screen)
         GL11.glClearColor(0.4f, 0.6f, 0.9f, 0f);
         GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT | GL11.GL_STENCIL_BUFFER_BIT);
@@ -74,10 +110,23 @@ public class GlooCore {
         * */
 
         while(batchQueue.hasNext()){
-            batchQueue.next().render(panelMatrix);
+            GlooBatch batch = batchQueue.next();
+            if(!prepared || batch.hasPending()){
+                batch.render(panelMatrix);
+            }
         }
 
         batchQueue.reset();
+        frame += 1;
+    }
+
+    /**
+     * @return the number of frames rendered so far, which Textures are stamped with when they are drawn
+     * @see Texture#use()
+     * */
+    public long frame(){
+        return frame;
+
     }
     public GlooBatch getBatch(int handle){
         return batchQueue.getBatch(handle);
@@ -180,6 +229,15 @@ public class GlooCore {
             iterator += 1;
             return batches.get(sequence.get(iterator - 1));
         }
+        /** Gets a batch by its place in the draw sequence, without disturbing the iterator (which the rendering thread may be using) */
+        GlooBatch peek(int index){
+            return batches.get(sequence.get(index));
+
+        }
+        int size(){
+            return sequence.size();
+
+        }
         void reset(){
             iterator = 0;
 
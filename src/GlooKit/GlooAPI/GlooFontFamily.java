@@ -4,7 +4,33 @@ import java.awt.*;
 import java.awt.font.FontRenderContext;
 import java.io.FileInputStream;
 import java.io.InputStream;
-
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A GlooFontFamily holds the glyphs of up to three styles (plain, italic and bold) of a font, rasterized into a
+ * TextureAtlas, along with the metrics needed to lay them out at any point size
+ * @see GlooCharacter
+ *
+ * Glyphs are normally rasterized at the point size of the family, and blur when drawn much larger or smaller. A family
+ * can instead bake its glyphs as distance fields, at a small fixed size (DISTANCE_FIELD_SIZE), which stay sharp at any
+ * point size when drawn with a distance field shader, for a fraction of the atlas space
+ * @see DistanceField
+ * @see GlooKit.GlooFramework.TextBatch#setDistanceFields(boolean)
+ *
+ * Only the characters of the set a font is added with are rasterized up front. Any other character is rasterized the
+ * first time it is asked for, and inserted into the atlas (along with any others asked for that frame) by the next
+ * bind, so text in any script can be drawn without paying at startup for the glyphs that never are
+ * @see GlooFontFamily#getCharacter(int, int)
+ *
+ * A font added from a file is saved to a FontCache once it is rasterized (whenever its atlas is cached), so the next
+ * launch takes its set straight from the cache, and AWT only opens the font if a character outside the set is asked for
+ * @see FontCache
+ * @see TextureAtlas#setCached(boolean)
+ * */
 public final class GlooFontFamily {
 
     public static final String STANDARD_TEXT_SET =
@@ -19,14 +45,21 @@ public final class GlooFontFamily {
     public static final int GLOOFONT_BOLD = 2;
     private static final int NUM_STYLES = 3;
 
+    public static final float DISTANCE_FIELD_SIZE = 48; // the font size distance field glyphs are baked at
+
     private boolean hasPlain = false;
     private boolean hasItalic = false;
     private boolean hasBold = false;
 
-    private GlooCharacter[][] characterMaps;
+    private final List<Map<Integer, GlooCharacter>> characterMaps; // the characters of each style rasterized so far, by code point
+    private final Font[] fonts = new Font[NUM_STYLES]; // each style, derived to the size it is rasterized at
+    private final FontRenderContext[] contexts = new FontRenderContext[NUM_STYLES];
+    private final String[] files = new String[NUM_STYLES]; // the .ttf file of each style taken from a FontCache, opened only when needed
+    private final boolean[] antiAliases = new boolean[NUM_STYLES];
 
     TextureAtlas textureAtlas;
     public final float pointSize;
+    private final boolean distanceField; // whether the glyphs are baked as distance fields
     private String fontName;
 
     private float lineHeight;
@@ -37,17 +70,29 @@ public final class GlooFontFamily {
     * TODO: Load in an entire font family at once using a name string and a directory
     * */
     public GlooFontFamily(TextureAtlas textureAtlas, float size, String fontName) {
-        this.characterMaps = new GlooCharacter[NUM_STYLES][];
+        this(textureAtlas, size, fontName, false);
+
+    }
+    public GlooFontFamily(TextureAtlas textureAtlas, float size, String fontName, boolean distanceField) {
+        this.characterMaps = new ArrayList<>(NUM_STYLES);
+        for (int i = 0; i < NUM_STYLES; i++) {
+            characterMaps.add(new ConcurrentHashMap<>());
+        }
         this.textureAtlas = textureAtlas;
         this.pointSize = size;
         this.fontName = fontName;
+        this.distanceField = distanceField;
     }
     public GlooFontFamily(TextureAtlas textureAtlas, float size, String fontName, String filePath) {
         this(textureAtlas, size, fontName, filePath, STANDARD_TEXT_SET);
 
     }
     public GlooFontFamily(TextureAtlas textureAtlas, float size, String fontName, String filePath, String set) {
-        this(textureAtlas, size, fontName);
+        this(textureAtlas, size, fontName, filePath, set, false);
+
+    }
+    public GlooFontFamily(TextureAtlas textureAtlas, float size, String fontName, String filePath, String set, boolean distanceField) {
+        this(textureAtlas, size, fontName, distanceField);
         addFont(filePath, set);
     }
     public GlooFontFamily(TextureAtlas textureAtlas, float size, String fontName, String[] filePaths, String[] sets) {
@@ -66,12 +111,18 @@ public final class GlooFontFamily {
 
     }
     public int addFont(String filePath, String set, boolean antiAlias) {
+        FontCache cache = textureAtlas.isCached() ? FontCache.of(filePath, pointSize, set, antiAlias, distanceField, textureAtlas.isSingleChannel()) : null;
+        FontCache.Glyphs glyphs = cache == null ? null : cache.read();
+        if (glyphs != null) {
+            return addFont(filePath, glyphs, antiAlias);
+        }
+
         try {
 
             InputStream in = new FileInputStream(filePath);
             Font awtFont = Font.createFont(Font.TRUETYPE_FONT, in);
 
-            return addFont(awtFont, set, antiAlias);
+            return addFont(awtFont, set, antiAlias, cache);
 
         } catch (Exception e) {
 
@@ -87,9 +138,124 @@ public final class GlooFontFamily {
 
     }
     public int addFont(Font font, String set, boolean antiAlias) {
+        return addFont(font, set, antiAlias, null);
+
+    }
+
+    /** Adds a font, and saves the characters of its set to cache afterwards (if cache is not null) */
+    private int addFont(Font font, String set, boolean antiAlias, FontCache cache) {
+
+        /* First, we have to derive the font to be of the correct pointSize (distance fields are baked at their own size, and scaled) */
+        font = font.deriveFont(distanceField ? DISTANCE_FIELD_SIZE : size());
 
-        /* First, we have to derive the font to be of the correct pointSize */
-        font = font.deriveFont(pointSize * 1.66f); // TODO 1.66 is a hardcoded constant specific to my screensize...
+        int type = style(font);
+        if (!claim(type)) {
+            return type;
+        }
+
+        // First create a FontRenderContext
+        FontRenderContext fontRenderContext = new FontRenderContext(null, antiAlias, false);
+
+//        System.out.println("type " + type);
+//        System.out.println("maps " + characterMaps);
+
+        fonts[type] = font;
+        contexts[type] = fontRenderContext;
+
+        // Each character is rasterized on its own, so the characters of the set are spread over the ThreadPool, and
+        // then added to the atlas together (the rest, and every character of the COMPLETE_TEXT_SET, are rasterized
+        // when they are first asked for)
+        int[] codePoints = set == null ? new int[0] : set.codePoints().distinct().toArray();
+        GlooCharacter[] characters = new GlooCharacter[codePoints.length];
+        Font derived = font;
+        textureAtlas.getPool().parallelFor(codePoints.length, (i) -> {
+            characters[i] = new GlooCharacter(fontRenderContext, derived, this, codePoints[i], true, GlooCharacter.DEFER); // create the character
+        });
+        place(type, codePoints, characters);
+
+        if (cache != null) {
+            cache.write(glyphs(font, type, codePoints, characters));
+        }
+
+        return type;
+    }
+
+    /** Adds the characters of a font's set from a FontCache, leaving the font itself to be opened if it is ever needed */
+    private int addFont(String filePath, FontCache.Glyphs glyphs, boolean antiAlias) {
+        int type = glyphs.style;
+        if (!claim(type)) {
+            return type;
+        }
+        files[type] = filePath;
+        antiAliases[type] = antiAlias;
+
+        lineHeight = glyphs.lineHeight;
+        charHeight = glyphs.charHeight;
+        baseHeight = glyphs.baseHeight;
+
+        GlooCharacter[] characters = new GlooCharacter[glyphs.codePoints.length];
+        for (int i = 0; i < characters.length; i++) {
+            characters[i] = new GlooCharacter(this, glyphs.x[i], glyphs.y[i], glyphs.w[i], glyphs.h[i], glyphs.advance[i],
+                    glyphs.pixels[i], glyphs.widths[i], glyphs.heights[i]);
+        }
+        place(type, glyphs.codePoints, characters);
+
+        return type;
+    }
+
+    /** Adds the pixels of DEFER characters to the atlas all at once, and puts the characters in the map of their style */
+    private void place(int type, int[] codePoints, GlooCharacter[] characters) {
+        ByteBuffer[] buffers = new ByteBuffer[characters.length];
+        int[] widths = new int[characters.length];
+        int[] heights = new int[characters.length];
+        for(int i = 0; i < characters.length; i++){
+            buffers[i] = characters[i].pixels();
+            widths[i] = characters[i].pixelWidth();
+            heights[i] = characters[i].pixelHeight();
+        }
+        Texture[] textures = textureAtlas.addTextures(buffers, widths, heights);
+        Map<Integer, GlooCharacter> map = characterMaps.get(type);
+        for(int i = 0; i < characters.length; i++){
+            characters[i].place(textures[i]);
+            map.put(codePoints[i], characters[i]);
+        }
+    }
+
+    /** @return what a FontCache keeps of a font and the characters of its set */
+    private FontCache.Glyphs glyphs(Font font, int type, int[] codePoints, GlooCharacter[] characters) {
+        FontCache.Glyphs glyphs = new FontCache.Glyphs();
+        glyphs.family = font.getFamily();
+        glyphs.name = font.getFontName();
+        glyphs.style = type;
+        glyphs.lineHeight = lineHeight;
+        glyphs.charHeight = charHeight;
+        glyphs.baseHeight = baseHeight;
+        glyphs.codePoints = codePoints;
+        int count = characters.length;
+        glyphs.x = new float[count];
+        glyphs.y = new float[count];
+        glyphs.w = new float[count];
+        glyphs.h = new float[count];
+        glyphs.advance = new float[count];
+        glyphs.widths = new int[count];
+        glyphs.heights = new int[count];
+        glyphs.pixels = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            GlooCharacter character = characters[i];
+            glyphs.x[i] = character.offset().x();
+            glyphs.y[i] = character.offset().y();
+            glyphs.w[i] = character.size().x();
+            glyphs.h[i] = character.size().y();
+            glyphs.advance[i] = character.advance();
+            glyphs.widths[i] = character.texture().width();
+            glyphs.heights[i] = character.texture().height();
+            glyphs.pixels[i] = character.texture().getBuffer();
+        }
+        return glyphs;
+    }
+
+    /** @return the style of a font: GLOOFONT_PLAIN, GLOOFONT_ITALIC or GLOOFONT_BOLD */
+    private static int style(Font font) {
 
         int type = 0; // this is for speed when putting the characters in the arraylist
 
@@ -100,66 +266,63 @@ public final class GlooFontFamily {
 
         if (styleString.contains("bold")) {
             type = GLOOFONT_BOLD;
+        } else if (styleString.contains("italic")) {
+            type = GLOOFONT_ITALIC;
+        } else {
+            type = GLOOFONT_PLAIN;
+        }
+        return type;
+    }
+
+    /** @return true if the family had no font of this style yet, and now has (false, with a warning, if it had) */
+    private boolean claim(int type) {
+        if (type == GLOOFONT_BOLD) {
 
             if (hasBold) {
                 System.out.println("WARNING: FontFamily already has font of type BOLD");
                 System.out.println("Keeping previous font and not adding new font");
-                return type;
+                return false;
             }
 
             hasBold = true;
-        } else if (styleString.contains("italic")) {
-            type = GLOOFONT_ITALIC;
+        } else if (type == GLOOFONT_ITALIC) {
 
             if (hasItalic) {
                 System.out.println("WARNING: FontFamily already has font of type ITALIC");
                 System.out.println("Keeping previous font and not adding new font");
-                return type;
+                return false;
             }
 
             hasItalic = true;
         } else {
-            type = GLOOFONT_PLAIN;
 
             if (hasPlain) {
                 System.out.println("WARNING: FontFamily already has font of type PLAIN");
                 System.out.println("Keeping previous font and not adding new font");
-                return type;
+                return false;
             }
 
             hasPlain = true;
         }
+        return true;
+    }
 
+    /** @return the font size glyphs are laid out at (the size they are rasterized at, unless they are distance fields) */
+    private float size(){
+        return pointSize * 1.66f; // TODO 1.66 is a hardcoded constant specific to my screensize...
 
+    }
 
-        // First create a FontRenderContext
-        FontRenderContext fontRenderContext = new FontRenderContext(null, antiAlias, false);
-
-//        System.out.println("type " + type);
-//        System.out.println("maps " + characterMaps);
-
-        if(set == null){
-            characterMaps[type] = new GlooCharacter[font.getNumGlyphs()];
-            for(int i = 0; i < font.getNumGlyphs(); i++){
-                GlooCharacter character = new GlooCharacter(fontRenderContext, font, this, i, true); // create the character
-                characterMaps[type][i] = character;
-            }
-        } else {
-            char[] chars = set.toCharArray();
-            int max = 0;
-            for(char ch : chars){
-                max = ((int)ch > max) ? (int)ch + 1 : max;
-            }
-            characterMaps[type] = new GlooCharacter[max];
-            for(char ch : chars){
-                GlooCharacter character = new GlooCharacter(fontRenderContext, font, this, (int)ch, true); // create the character
-                characterMaps[type][(int)ch] = character;
-            }
-        }
+    /** @return whether the glyphs of this family are distance fields, which need a distance field shader */
+    public boolean isDistanceField(){
+        return distanceField;
 
+    }
 
+    /** @return how much larger the glyphs are laid out than they were rasterized (1 unless they are distance fields) */
+    final float scale(){
+        return distanceField ? size() / DISTANCE_FIELD_SIZE : 1;
 
-        return type;
     }
 
     final void setCharHeight(float height){
@@ -200,10 +363,67 @@ public final class GlooFontFamily {
     }
 
     public GlooCharacter getCharacter(int style, char ch){
-        return characterMaps[style][(int)ch];
+        return getCharacter(style, (int)ch);
 
     }
 
+    /**
+     * @return the character of a style for a code point, which is rasterized now if it has not been asked for before.
+     * A character rasterized now is not ready to draw until the next bind has uploaded it @see GlooCharacter#isReady()
+     * (characters the font has no glyph for get the font's missing glyph)
+     * */
+    public GlooCharacter getCharacter(int style, int codePoint){
+        GlooCharacter character = characterMaps.get(style).get(codePoint);
+        if (character != null) {
+            return character;
+        }
+        Font font = font(style);
+        return characterMaps.get(style).computeIfAbsent(codePoint, (c) -> new GlooCharacter(contexts[style], font, this, c, true, GlooCharacter.STREAM));
+
+    }
+
+    /**
+     * @return the font of a style, derived to the size it is rasterized at, which is opened now if the style was taken
+     * from a FontCache and this is the first character outside its set
+     * */
+    private synchronized Font font(int style){
+        if (fonts[style] == null && files[style] != null) {
+            try (InputStream in = new FileInputStream(files[style])) {
+                contexts[style] = new FontRenderContext(null, antiAliases[style], false);
+                fonts[style] = Font.createFont(Font.TRUETYPE_FONT, in).deriveFont(distanceField ? DISTANCE_FIELD_SIZE : size());
+            } catch (Exception e) {
+                System.out.println("Unable to create font.");
+                e.printStackTrace();
+                System.exit(400);
+            }
+        }
+        if (fonts[style] == null) {
+            (new Exception("ERROR: FontFamily " + fontName + " has no font of style " + style)).printStackTrace();
+            System.exit(300);
+        }
+        return fonts[style];
+    }
+
+    /**
+     * @return the family name of the font in a .ttf file, which TextBatch groups fonts by, taken from a FontCache of
+     * the font if there is one (so AWT need not open it) @see FontCache
+     * */
+    public static String familyName(String filePath){
+        String family = FontCache.family(filePath);
+        if (family != null) {
+            return family;
+        }
+        try (InputStream in = new FileInputStream(filePath)) {
+            return Font.createFont(Font.TRUETYPE_FONT, in).getFamily();
+        } catch (Exception e) {
+            System.out.println("Unable to create Font to get name of font.");
+            e.printStackTrace();
+            System.exit(400);
+
+            return null; // this will never happen
+        }
+    }
+
 }
 
 
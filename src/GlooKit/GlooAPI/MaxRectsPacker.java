@@ -0,0 +1,158 @@
+package GlooKit.GlooAPI;
+
+import java.util.Arrays;
+
+/**
+ * The MaxRectsPacker keeps track of every maximal free rectangle left in the atlas (free rectangles may overlap one
+ * another). Each texture (longest side first) goes into whichever free rectangle leaves its bottom edge lowest, and
+ * every free rectangle it overlaps is then split into the up to four free rectangles around it.
+ * @see TexturePacker
+ *
+ * This packs tighter than the ShelfPacker and SkylinePacker, since it can reuse space anywhere in the atlas rather
+ * than only along the top, but the list of free rectangles has to be pruned after every placement, so it is the
+ * slowest of the three on large sets.
+ * */
+public class MaxRectsPacker implements TexturePacker {
+
+    @Override
+    public int[] pack(int[] widths, int[] heights, int[] x, int[] y){
+        int atlasW = PackOrder.width(widths, heights, 1.05);
+        int atlasH = 0;
+
+        // the free rectangles, as {x, y, w, h} runs; the atlas starts out as one free column of unbounded height
+        int[] free = new int[64];
+        int count = 0;
+        free[0] = 0;
+        free[1] = 0;
+        free[2] = atlasW;
+        free[3] = Integer.MAX_VALUE / 2;
+        count = 1;
+
+        // the shortest side of any texture still to come; free rectangles narrower or shorter than it are dead space
+        int[] order = PackOrder.byLongestSide(widths, heights);
+        int[] shortest = new int[order.length + 1];
+        shortest[order.length] = Integer.MAX_VALUE;
+        for(int k = order.length - 1; k >= 0; k--){
+            int side = Math.min(widths[order[k]], heights[order[k]]);
+            shortest[k] = side == 0 ? shortest[k + 1] : Math.min(shortest[k + 1], side);
+        }
+
+        for(int k = 0; k < order.length; k++){
+            int t = order[k];
+            int w = widths[t];
+            int h = heights[t];
+            if(w == 0 || h == 0){ // empty textures (like the glyph for a space) take up no room at all
+                x[t] = 0;
+                y[t] = 0;
+                continue;
+            }
+
+            // bottom left rule: the lowest bottom edge wins, and then the leftmost
+            int bestX = 0;
+            int bestY = 0;
+            int bestBottom = Integer.MAX_VALUE;
+            for(int i = 0; i < count; i++){
+                int fx = free[4 * i];
+                int fy = free[4 * i + 1];
+                if(w <= free[4 * i + 2] && h <= free[4 * i + 3]){
+                    int bottom = fy + h;
+                    if(bottom < bestBottom || (bottom == bestBottom && fx < bestX)){
+                        bestX = fx;
+                        bestY = fy;
+                        bestBottom = bottom;
+                    }
+                }
+            }
+
+            x[t] = bestX;
+            y[t] = bestY;
+            atlasH = Math.max(atlasH, bestBottom);
+
+            // split every free rectangle the texture overlaps into the free rectangles around it
+            int before = count;
+            for(int i = 0; i < before; i++){
+                int fx = free[4 * i];
+                int fy = free[4 * i + 1];
+                int fw = free[4 * i + 2];
+                int fh = free[4 * i + 3];
+                if(bestX >= fx + fw || bestX + w <= fx || bestY >= fy + fh || bestY + h <= fy){
+                    continue; // no overlap
+                }
+                if(bestX > fx){ // left of the texture
+                    free = add(free, count++, fx, fy, bestX - fx, fh);
+                }
+                if(bestX + w < fx + fw){ // right of the texture
+                    free = add(free, count++, bestX + w, fy, fx + fw - bestX - w, fh);
+                }
+                if(bestY > fy){ // above the texture
+                    free = add(free, count++, fx, fy, fw, bestY - fy);
+                }
+                if(bestY + h < fy + fh){ // below the texture
+                    free = add(free, count++, fx, bestY + h, fw, fy + fh - bestY - h);
+                }
+                free[4 * i + 2] = 0; // the original is gone (removed in the pruning below)
+            }
+
+            count = prune(free, before, count, shortest[k + 1]);
+        }
+
+        return new int[]{atlasW, atlasH};
+    }
+
+    private static int[] add(int[] free, int index, int x, int y, int w, int h){
+        if(4 * index + 4 > free.length){
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[4 * index] = x;
+        free[4 * index + 1] = y;
+        free[4 * index + 2] = w;
+        free[4 * index + 3] = h;
+        return free;
+    }
+
+    /**
+     * Drops emptied free rectangles, free rectangles too small for any texture still to come, and any free rectangle
+     * contained in another, returning the new count. The rectangles below split were already pruned against each
+     * other, so only the ones split off this time need comparing with the rest.
+     * */
+    private static int prune(int[] free, int split, int count, int smallest){
+        for(int i = 0; i < count; i++){
+            if(free[4 * i + 2] < smallest || free[4 * i + 3] < smallest){
+                free[4 * i + 2] = 0;
+            }
+        }
+        for(int i = split; i < count; i++){
+            if(free[4 * i + 2] == 0){
+                continue;
+            }
+            for(int j = 0; j < count; j++){
+                if(i == j || free[4 * j + 2] == 0){
+                    continue;
+                }
+                if(contains(free, j, i)){
+                    free[4 * i + 2] = 0; // i lies inside j (if they are identical, only the first one checked goes)
+                    break;
+                }
+                if(j < split && contains(free, i, j)){
+                    free[4 * j + 2] = 0;
+                }
+            }
+        }
+        int kept = 0;
+        for(int i = 0; i < count; i++){
+            if(free[4 * i + 2] != 0){
+                System.arraycopy(free, 4 * i, free, 4 * kept, 4);
+                kept += 1;
+            }
+        }
+        return kept;
+    }
+
+    /** @return true if free rectangle outer contains free rectangle inner */
+    private static boolean contains(int[] free, int outer, int inner){
+        return free[4 * inner] >= free[4 * outer]
+                && free[4 * inner + 1] >= free[4 * outer + 1]
+                && free[4 * inner] + free[4 * inner + 2] <= free[4 * outer] + free[4 * outer + 2]
+                && free[4 * inner + 1] + free[4 * inner + 3] <= free[4 * outer + 1] + free[4 * outer + 3];
+    }
+}
@@ -0,0 +1,65 @@
+package GlooKit.GlooAPI;
+
+import java.util.Arrays;
+
+/**
+ * Helpers shared by the TexturePackers for ordering and sizing the rectangles they pack
+ * @see TexturePacker
+ * */
+final class PackOrder {
+
+    private static final int INDEX = 0x1FFFFF; // the low 21 bits of a sort key, which hold the index
+
+    private PackOrder(){
+
+    }
+
+    /**
+     * @return the indices of the rectangles, tallest first (and widest first among rectangles of the same height),
+     * which is the order Texture#compareTo sorts Textures in
+     * */
+    static int[] byHeight(int[] widths, int[] heights){
+        return sorted(heights, widths);
+
+    }
+
+    /** @return the indices of the rectangles, longest side first (and longest other side first among ties) */
+    static int[] byLongestSide(int[] widths, int[] heights){
+        int[] longest = new int[widths.length];
+        int[] shortest = new int[widths.length];
+        for(int i = 0; i < widths.length; i++){
+            longest[i] = Math.max(widths[i], heights[i]);
+            shortest[i] = Math.min(widths[i], heights[i]);
+        }
+        return sorted(longest, shortest);
+    }
+
+    /**
+     * Picks a width for an atlas with roughly square proportions: wide enough for the widest rectangle, and close to
+     * the square root of the total area (with a little slack, since no packing is perfect)
+     * */
+    static int width(int[] widths, int[] heights, double slack){
+        long area = 0;
+        int widest = 0;
+        for(int i = 0; i < widths.length; i++){
+            area += (long)widths[i] * heights[i];
+            widest = Math.max(widest, widths[i]);
+        }
+        return Math.max(widest, (int)Math.sqrt(area * slack));
+    }
+
+    /** Sorts indices by a primary then a secondary key, both descending, without boxing (keys must be under 2^21) */
+    private static int[] sorted(int[] primary, int[] secondary){
+        int n = primary.length;
+        long[] keys = new long[n];
+        for(int i = 0; i < n; i++){
+            keys[i] = ((long)primary[i] << 42) | ((long)secondary[i] << 21) | (INDEX - i); // ties keep their order
+        }
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for(int i = 0; i < n; i++){
+            order[i] = INDEX - (int)(keys[n - 1 - i] & INDEX); // descending
+        }
+        return order;
+    }
+}
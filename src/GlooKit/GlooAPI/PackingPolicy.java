@@ -0,0 +1,46 @@
+package GlooKit.GlooAPI;
+
+/**
+ * A PackingPolicy decides how many threads a GlooBatch splits its vertex packing over each frame.
+ * @see GlooBatch#setPackingPolicy(PackingPolicy)
+ *
+ * Packing is split into slices, one per thread, and the calling thread (the rendering thread, or the thread preparing
+ * the frame in a pipelined application) packs a slice of its own alongside the ThreadPool. More slices means less
+ * packing per thread but more fan-out overhead, so a small batch is almost always best packed by a single thread.
+ * (However many slices there are, the frame is still one upload and one draw.)
+ *
+ * A policy is told how long each frame's packing actually took, so it can adapt to the scene it is packing.
+ * The default policy is an AdaptivePackingPolicy; batches that should never fan out can use SINGLE_THREADED.
+ * @see AdaptivePackingPolicy
+ * */
+public interface PackingPolicy {
+
+    /** Packs every frame on the calling thread alone */
+    PackingPolicy SINGLE_THREADED = (objects, floats, poolSize) -> 1;
+
+    /**
+     * Picks the number of slices to pack a frame in
+     *
+     * @param objects the number of DrawingObjects in the frame
+     * @param floats the total number of vertex floats in the frame
+     * @param poolSize the number of threads in the ThreadPool (the calling thread helps too, so up to poolSize + 1
+     *                 slices can be packed at once)
+     * @return the number of slices, which must be at least 1 (GlooBatch clamps it to the number of objects)
+     * */
+    int threads(int objects, int floats, int poolSize);
+
+    /**
+     * Tells the policy how a frame's packing went. This is called after every streamed frame by the thread that packed
+     * it: the rendering thread, or the game loop's Worker thread when the application is pipelined
+     * @see GlooKit.GlooFramework.GlooApplication#setPipelined(boolean)
+     * Either way frames are packed one at a time, so this is never called on two threads at once
+     *
+     * @param threads the number of slices the frame was packed in
+     * @param floats the total number of vertex floats in the frame
+     * @param wallNanos how long packing the frame took from start to finish
+     * @param workNanos how long all of the slices took added together (the time a single thread would have needed)
+     * */
+    default void measured(int threads, int floats, long wallNanos, long workNanos){
+
+    }
+}
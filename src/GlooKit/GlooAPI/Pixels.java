@@ -0,0 +1,116 @@
+package GlooKit.GlooAPI;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Pixels holds the bulk operations on RGBA pixel buffers that Textures and TextureAtlases run over every pixel they
+ * load or pack. @see Texture
+ * @see TextureAtlas
+ *
+ * Pixels can also be premultiplied by their alpha on the way into an atlas. @see TextureAtlas#setPremultiplied(boolean)
+ *
+ * Both work on whole runs of memory at a time rather than a byte at a time: the alpha scan reads the pixels as longs
+ * (two pixels each) and ANDs a chunk of them together before checking, a loop simple enough for the JIT to unroll, and
+ * the copies are buffer to buffer puts, which for direct buffers are a single memory copy per row. Driver.PixelBenchmark
+ * compares them with the byte at a time versions they replace.
+ * */
+public final class Pixels {
+
+    private static final int CHUNK = 1024; // longs the alpha scan reads between checks for a transparent pixel
+    private static final long OPAQUE = 0xFF000000FF000000L; // the alpha bytes of two little endian RGBA pixels
+
+    private Pixels(){
+
+    }
+
+    /**
+     * @param rgba a buffer of RGBA pixels, 4 bytes each, starting at position 0
+     * @param pixels the number of pixels in the buffer
+     * @return true if any of the pixels has an alpha below 255
+     * */
+    public static boolean hasAlpha(ByteBuffer rgba, int pixels){
+        ByteBuffer bytes = rgba.duplicate();
+        bytes.clear(); // from position 0
+        LongBuffer pairs = bytes.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        int count = pixels / 2;
+        for(int done = 0; done < count; done += CHUNK){
+            int end = Math.min(count, done + CHUNK);
+            long all = OPAQUE;
+            for(int i = done; i < end; i++){ // no early exit inside a chunk, so the loop stays a plain reduction
+                all &= pairs.get(i);
+            }
+            if((all & OPAQUE) != OPAQUE){
+                return true;
+            }
+        }
+        return pixels % 2 == 1 && rgba.get(4 * (pixels - 1) + 3) != (byte)255; // the odd pixel out
+    }
+
+    /**
+     * Copies a width by height rectangle of RGBA pixels from one buffer into another, row by row
+     *
+     * @param source the pixels to copy from, starting at byte from, with rows sourceStride bytes apart
+     * @param target the pixels to copy into, starting at byte to, with rows targetStride bytes apart
+     * */
+    public static void copy(ByteBuffer source, int from, int sourceStride, ByteBuffer target, int to, int targetStride, int width, int height){
+        copyRows(source, from, sourceStride, target, to, targetStride, 4 * width, height);
+
+    }
+
+    /**
+     * Copies height rows of row bytes each from one buffer into another, whatever the pixels in them (this is how the
+     * one byte pixels of a single channel atlas are copied) @see TextureAtlas#setSingleChannel(boolean)
+     *
+     * @param source the bytes to copy from, starting at byte from, with rows sourceStride bytes apart
+     * @param target the bytes to copy into, starting at byte to, with rows targetStride bytes apart
+     * */
+    public static void copyRows(ByteBuffer source, int from, int sourceStride, ByteBuffer target, int to, int targetStride, int row, int height){
+        ByteBuffer read = source.duplicate();
+        ByteBuffer write = target.duplicate();
+        if(row == sourceStride && row == targetStride){ // the rows are back to back on both sides, so it is one copy
+            read.limit(from + row * height);
+            read.position(from);
+            write.position(to);
+            write.put(read);
+            return;
+        }
+        for(int y = 0; y < height; y++){
+            read.limit(from + y * sourceStride + row);
+            read.position(from + y * sourceStride);
+            write.position(to + y * targetStride);
+            write.put(read);
+        }
+    }
+
+    /**
+     * Copies a width by height rectangle of RGBA pixels from one buffer into another, just as copy does, with the color
+     * of each pixel multiplied by its alpha on the way (rounded to the nearest value). The target is only written, never
+     * read, so it can be mapped GPU memory
+     *
+     * @param source the pixels to copy from, starting at byte from, with rows sourceStride bytes apart
+     * @param target the pixels to copy into, starting at byte to, with rows targetStride bytes apart
+     * */
+    public static void premultiply(ByteBuffer source, int from, int sourceStride, ByteBuffer target, int to, int targetStride, int width, int height){
+        ByteBuffer read = source.duplicate().order(ByteOrder.LITTLE_ENDIAN); // red in the low byte, alpha in the high byte
+        ByteBuffer write = target.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for(int y = 0; y < height; y++){
+            int r = from + y * sourceStride;
+            int w = to + y * targetStride;
+            for(int x = 0; x < 4 * width; x += 4){
+                int pixel = read.getInt(r + x);
+                int a = pixel >>> 24;
+                if(a == 0){
+                    pixel = 0;
+                } else if(a != 255){
+                    pixel = (a << 24)
+                            | (((pixel >>> 16 & 0xFF) * a + 127) / 255 << 16)
+                            | (((pixel >>> 8 & 0xFF) * a + 127) / 255 << 8)
+                            | ((pixel & 0xFF) * a + 127) / 255;
+                }
+                write.putInt(w + x, pixel);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package GlooKit.GlooAPI;
+
+/**
+ * The ShelfPacker is the packer TextureAtlases have always used, and is still a fine choice for small atlases.
+ * @see TexturePacker
+ *
+ * Sorts Textures by height and then width
+ * Determines a maximum width of a row in the TextureAtlas's Texture
+ * Crams as many (of the largest remaining) Textures in one row as possible before moving on to the next row
+ * Additionally, to gain an extra boost on efficiently, every time a Texture is packed into a row,
+ * we check to see if another Texture can fit directly above it on the same row, and add the largest possible
+ * We call this "dirty packing" in the code below
+ *
+ * Each placement rescans the remaining Textures, so packing takes time quadratic in the number of Textures.
+ * */
+public class ShelfPacker implements TexturePacker {
+
+    @Override
+    public int[] pack(int[] widths, int[] heights, int[] x, int[] y){
+
+        int atlasW = PackOrder.width(widths, heights, 1.11); // multiply by 1.11 to help get a squarer end result
+        int atlasH = 0;
+
+        int[] elements = PackOrder.byHeight(widths, heights); // see Texture#compareTo
+        int size = elements.length;
+
+        int offsetX = 0;
+        int offsetY = 0;
+        while(size > 0){ // loop through all of the textures in elements
+
+            atlasH += heights[elements[0]]; // the first element of a row sets the height of the row
+
+            /* Assign textures along a row until nothing fits */
+            for(int i = 0; i < size; i++){
+                int t = elements[i];
+                if(offsetX + widths[t] <= atlasW){ // Check to see if this texture's width fits in the row
+                    // this texture may be added to the atlas here
+                    x[t] = offsetX;
+                    y[t] = offsetY;
+                    size = remove(elements, size, i);
+                    i -= 1;
+                    ///////////////////
+                    // DIRTY PACKING //
+                    ///////////////////
+                    /* Dirty packing refers to the process of placing a smaller element on top of a larger one in a row
+                    *
+                    * Example:
+                    *
+                    * ████████████████ ████████████ ████████████
+                    * ████████████████ ████████████ ████████████
+                    * ████████████████ ████████████ XXXXXX
+                    * ████████████████               XXXXXX
+                    *
+                    * The texture marked by the x's is dirty packed
+                    * */
+                    int grime = -1;
+                    for(int j = size - 1; j >= 0; j--){
+                        int e = elements[j];
+                        if(heights[e] <= atlasH - offsetY - heights[t] && widths[e] <= widths[t]){
+                            grime = j;
+                        }
+                    }
+                    if(grime != -1){
+                        x[elements[grime]] = offsetX;
+                        y[elements[grime]] = offsetY + heights[t];
+                        size = remove(elements, size, grime);
+                    }
+                    offsetX += widths[t];
+                }
+            }
+
+            offsetX = 0;
+            offsetY = atlasH;
+
+        }
+
+        return new int[]{atlasW, atlasH};
+    }
+
+    /** Removes the element at index, shifting the rest down, and returns the new size */
+    private static int remove(int[] elements, int size, int index){
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        return size - 1;
+    }
+}
@@ -0,0 +1,160 @@
+package GlooKit.GlooAPI;
+
+import java.util.Arrays;
+
+/**
+ * A Skyline is the top edge of everything placed in an atlas so far, as a list of flat segments from left to right.
+ * It is the free space bookkeeping behind both the SkylinePacker and the incremental insertion of a TextureAtlas.
+ * @see SkylinePacker
+ * @see TextureAtlas#bindAtlas()
+ *
+ * A rectangle is dropped in wherever its top would end up lowest (leftmost among ties), and the skyline is then
+ * raised to cover it. Space under the skyline is never handed out again, so a skyline is conservative but very cheap.
+ * */
+final class Skyline {
+
+    // segment i starts at column segX[i], is segW[i] wide and has its top at row segY[i]
+    private int[] segX = new int[16];
+    private int[] segY = new int[16];
+    private int[] segW = new int[16];
+    private int segments;
+    private int width;
+
+    /** Makes an empty skyline over an atlas width pixels wide */
+    Skyline(int width){
+        this.width = width;
+        segW[0] = width;
+        segments = 1;
+    }
+
+    /**
+     * Makes the skyline over rectangles that have already been placed (by any TexturePacker). Each column of the
+     * skyline sits on the lowest bottom edge in that column, so any holes between the rectangles are given up.
+     * */
+    static Skyline over(int width, int[] widths, int[] heights, int[] x, int[] y){
+        int[] columns = new int[width];
+        for(int i = 0; i < widths.length; i++){
+            if(widths[i] == 0 || heights[i] == 0){
+                continue;
+            }
+            int bottom = y[i] + heights[i];
+            for(int c = x[i]; c < x[i] + widths[i]; c++){
+                columns[c] = Math.max(columns[c], bottom);
+            }
+        }
+        Skyline skyline = new Skyline(width);
+        skyline.segments = 0;
+        for(int c = 0; c < width; c++){
+            if(c > 0 && columns[c] == columns[c - 1]){
+                skyline.segW[skyline.segments - 1] += 1;
+            } else {
+                skyline.insert(skyline.segments, c, columns[c], 1);
+            }
+        }
+        return skyline;
+    }
+
+    int width(){
+        return width;
+
+    }
+
+    /**
+     * Places a w by h rectangle and raises the skyline over it
+     *
+     * @param limit the height of the atlas; a rectangle whose bottom edge would pass it is not placed
+     * @param at receives the column and row of the upper left corner of the rectangle
+     * @return true if the rectangle was placed, false if there was no room for it under the limit
+     * */
+    boolean place(int w, int h, int limit, int[] at){
+        int best = -1;
+        int bestY = Integer.MAX_VALUE;
+        for(int i = 0; i < segments; i++){
+            int top = fit(i, w);
+            if(top != -1 && top < bestY){
+                best = i;
+                bestY = top;
+            }
+        }
+        if(best == -1 || (long)bestY + h > limit){
+            return false;
+        }
+
+        at[0] = segX[best];
+        at[1] = bestY;
+
+        // a new segment replaces whatever the rectangle covers
+        insert(best, segX[best], bestY + h, w);
+        int right = segX[best] + w;
+        int i = best + 1;
+        while(i < segments && segX[i] < right){
+            int overlap = right - segX[i];
+            if(overlap >= segW[i]){ // the segment is covered completely, so it goes
+                remove(i);
+            } else { // the segment sticks out to the right, so it is trimmed
+                segX[i] += overlap;
+                segW[i] -= overlap;
+                break;
+            }
+        }
+
+        // merge neighbouring segments at the same height
+        for(int j = 0; j + 1 < segments; j++){
+            if(segY[j] == segY[j + 1]){
+                segW[j] += segW[j + 1];
+                remove(j + 1);
+                j -= 1;
+            }
+        }
+        return true;
+    }
+
+    /** Widens the skyline to a larger atlas width, with the new columns empty */
+    void widen(int width){
+        if(segY[segments - 1] == 0){
+            segW[segments - 1] += width - this.width;
+        } else {
+            insert(segments, this.width, 0, width - this.width);
+        }
+        this.width = width;
+    }
+
+    /**
+     * @return the row the top of a rectangle of width w would sit at if its left edge were at the start of segment i,
+     * or -1 if it would stick out past the right edge of the atlas
+     * */
+    private int fit(int i, int w){
+        if(segX[i] + w > width){
+            return -1;
+        }
+        int top = 0;
+        int remaining = w;
+        for(int j = i; remaining > 0 && j < segments; j++){
+            top = Math.max(top, segY[j]);
+            remaining -= segW[j];
+        }
+        return top;
+    }
+
+    private void insert(int i, int x, int y, int w){
+        if(segments + 1 > segX.length){
+            segX = Arrays.copyOf(segX, segX.length * 2);
+            segY = Arrays.copyOf(segY, segY.length * 2);
+            segW = Arrays.copyOf(segW, segW.length * 2);
+        }
+        System.arraycopy(segX, i, segX, i + 1, segments - i);
+        System.arraycopy(segY, i, segY, i + 1, segments - i);
+        System.arraycopy(segW, i, segW, i + 1, segments - i);
+        segX[i] = x;
+        segY[i] = y;
+        segW[i] = w;
+        segments += 1;
+    }
+
+    private void remove(int i){
+        System.arraycopy(segX, i + 1, segX, i, segments - i - 1);
+        System.arraycopy(segY, i + 1, segY, i, segments - i - 1);
+        System.arraycopy(segW, i + 1, segW, i, segments - i - 1);
+        segments -= 1;
+    }
+}
@@ -0,0 +1,39 @@
+package GlooKit.GlooAPI;
+
+/**
+ * The SkylinePacker keeps track of the "skyline" of the atlas: the top edge of everything packed so far, as a list
+ * of flat segments from left to right. Each texture (tallest first) is dropped in wherever its top would end up
+ * lowest, which fills in the gaps that row by row packing leaves beside shorter textures.
+ * @see TexturePacker
+ * @see Skyline
+ *
+ * Each placement looks at every segment of the skyline, and the skyline rarely has more segments than there are
+ * textures in a row, so packing is fast even for large glyph sets.
+ * */
+public class SkylinePacker implements TexturePacker {
+
+    @Override
+    public int[] pack(int[] widths, int[] heights, int[] x, int[] y){
+        int atlasW = PackOrder.width(widths, heights, 1.05);
+        int atlasH = 0;
+
+        Skyline skyline = new Skyline(atlasW);
+        int[] at = new int[2];
+        for(int t : PackOrder.byHeight(widths, heights)){
+            int w = widths[t];
+            int h = heights[t];
+            if(w == 0 || h == 0){ // empty textures (like the glyph for a space) take up no room at all
+                x[t] = 0;
+                y[t] = 0;
+                continue;
+            }
+
+            skyline.place(w, h, Integer.MAX_VALUE, at); // with no height limit there is always room
+            x[t] = at[0];
+            y[t] = at[1];
+            atlasH = Math.max(atlasH, at[1] + h);
+        }
+
+        return new int[]{atlasW, atlasH};
+    }
+}
@@ -0,0 +1,261 @@
+package GlooKit.GlooAPI;
+
+import org.lwjgl.opengl.*;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static GlooKit.GlooAPI.GlooBatch.STREAM_DATA;
+import static GlooKit.GlooAPI.GlooBatch.STREAM_ORPHAN;
+import static GlooKit.GlooAPI.GlooBatch.STREAM_PERSISTENT;
+
+/**
+ * A StreamBuffer is the GPU side of one of a GlooBatch's per-frame buffers (vertices or indices).
+ * @see GlooBatch#setStreamingMode(int)
+ *
+ * It supports three ways of getting a frame's worth of data onto the GPU:
+ *
+ * STREAM_DATA          each upload calls glBufferData, reallocating the buffer's storage (the original path)
+ * STREAM_ORPHAN        the buffer is orphaned once per frame and each upload is written with glBufferSubData
+ * STREAM_PERSISTENT    the buffer is a ring of SECTIONS persistently mapped sections guarded by fences, and the
+ *                      packing threads write straight into mapped memory (no client side copy at all)
+ *
+ * If the context does not support buffer storage (GL 4.4 or ARB_buffer_storage), STREAM_PERSISTENT quietly falls back
+ * to STREAM_ORPHAN.
+ *
+ * Every frame goes begin(), then any number of reserve() (mapped) or upload() (unmapped) calls, then end().
+ * offset() gives the byte offset the next reserve or upload will land at, so that it can be drawn from.
+ * */
+final class StreamBuffer {
+
+    /** The number of sections in the persistent ring (triple buffering) */
+    private static final int SECTIONS = 3;
+
+    /** What an empty reserve() gets */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder());
+
+    private final int target;
+    private final int alignment;
+
+    private int mode;
+    private int activeMode;
+
+    private int id;
+    private long capacity; // in bytes, per section when persistent
+    private long cursor; // the byte offset of the next write this frame
+
+    // persistent ring state
+    private ByteBuffer mapped;
+    private final long[] fences;
+    private int section;
+
+    /**
+     * @param target the GL buffer target, GL15.GL_ARRAY_BUFFER or GL15.GL_ELEMENT_ARRAY_BUFFER
+     * @param alignment the number of bytes every section and every write must start on a multiple of
+     *                  (the vertex stride for vertices, 4 for indices so that 32 bit indices stay aligned)
+     * */
+    StreamBuffer(int target, int alignment){
+        this.target = target;
+        this.alignment = alignment;
+        this.mode = STREAM_DATA;
+        this.activeMode = STREAM_DATA;
+        this.fences = new long[SECTIONS];
+        this.id = GL15.glGenBuffers();
+    }
+
+    int id(){
+        return id;
+
+    }
+
+    void setMode(int mode){
+        this.mode = mode;
+
+    }
+
+    /** @return true if packing threads should write into reserve()d memory rather than their own buffers */
+    boolean isMapped(){
+        return activeMode == STREAM_PERSISTENT;
+
+    }
+
+    /**
+     * Gets the buffer ready to receive a frame's worth of data and binds it to its target
+     *
+     * @param bytes the total number of bytes that will be reserved or uploaded this frame, with each write rounded up
+     *              to the alignment
+     * @return true if the GL buffer object was replaced, in which case any vertex attribute pointers into it must be
+     *         set up again
+     * */
+    boolean begin(long bytes){
+        boolean replaced = false;
+
+        int requested = mode;
+        if(requested == STREAM_PERSISTENT && !supportsPersistence()){
+            requested = STREAM_ORPHAN;
+        }
+
+        if(requested != activeMode){
+            if(activeMode == STREAM_PERSISTENT){
+                release();
+                id = GL15.glGenBuffers();
+                replaced = true;
+            }
+            activeMode = requested;
+            capacity = 0;
+        }
+
+        GL15.glBindBuffer(target, id);
+        cursor = 0;
+
+        switch(activeMode){
+            case STREAM_ORPHAN:
+                if(bytes > capacity){
+                    capacity = align(bytes * 2);
+                }
+                GL15.glBufferData(target, capacity, GL15.GL_STREAM_DRAW); // orphan last frame's storage
+                break;
+            case STREAM_PERSISTENT:
+                if(bytes > capacity){
+                    if(mapped != null){
+                        release();
+                        id = GL15.glGenBuffers();
+                        GL15.glBindBuffer(target, id);
+                    }
+                    capacity = align(bytes * 2);
+                    int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+                    GL44.glBufferStorage(target, capacity * SECTIONS, flags);
+                    mapped = GL30.glMapBufferRange(target, 0, capacity * SECTIONS, flags);
+                    mapped.order(ByteOrder.nativeOrder());
+                    section = 0;
+                    replaced = true;
+                }
+                awaitSection();
+                break;
+            default:
+                break;
+        }
+        return replaced;
+    }
+
+    /**
+     * Reserves a region of the mapped ring for a packing thread to write into (STREAM_PERSISTENT only)
+     *
+     * @param bytes the size of the region
+     * @return a native ordered view of the mapped region; position 0 is the start of the region
+     * */
+    ByteBuffer reserve(long bytes){
+        if(bytes == 0){
+            return EMPTY; // nothing to write (and begin(0) never maps the ring)
+        }
+        int start = (int)(section * capacity + cursor);
+        ByteBuffer region = mapped.duplicate();
+        region.limit(start + (int)bytes);
+        region.position(start);
+        cursor = align(cursor + bytes);
+        return region.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /** @return the byte offset (within the bound buffer) that the next reserve() or upload() will land at */
+    long offset(){
+        switch(activeMode){
+            case STREAM_PERSISTENT: return section * capacity + cursor;
+            case STREAM_ORPHAN:     return cursor;
+            default:                return 0;
+        }
+    }
+
+    /**
+     * Sends a client side buffer to the GPU (STREAM_DATA and STREAM_ORPHAN)
+     *
+     * @param data a flipped buffer of vertices or indices
+     * @return the byte offset of the data within the buffer
+     * */
+    long upload(Buffer data){
+        long offset = offset();
+        if(activeMode == STREAM_DATA){
+            if(data instanceof FloatBuffer){GL15.glBufferData(target, (FloatBuffer)data, GL15.GL_STREAM_DRAW);}
+            if(data instanceof ShortBuffer){GL15.glBufferData(target, (ShortBuffer)data, GL15.GL_STREAM_DRAW);}
+            if(data instanceof IntBuffer  ){GL15.glBufferData(target, (IntBuffer  )data, GL15.GL_STREAM_DRAW);}
+        } else {
+            if(data instanceof FloatBuffer){GL15.glBufferSubData(target, offset, (FloatBuffer)data);}
+            if(data instanceof ShortBuffer){GL15.glBufferSubData(target, offset, (ShortBuffer)data);}
+            if(data instanceof IntBuffer  ){GL15.glBufferSubData(target, offset, (IntBuffer  )data);}
+            cursor = align(cursor + bytes(data));
+        }
+        return offset;
+    }
+
+    /**
+     * Finishes the frame. In STREAM_PERSISTENT mode this fences the section that was just drawn from and moves on to
+     * the next one, so that the CPU never writes into memory the GPU may still be reading.
+     * */
+    void end(){
+        if(activeMode == STREAM_PERSISTENT){
+            fences[section] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            section = (section + 1) % SECTIONS;
+        }
+    }
+
+    void destroy(){
+        release();
+
+    }
+
+    ////////////////////////////////////
+    ////////////////////////////////////
+
+    /** Blocks until the GPU has finished with the current section of the ring */
+    private void awaitSection(){
+        long fence = fences[section];
+        if(fence != 0){
+            int result = GL32.glClientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, 0);
+            while(result == GL32.GL_TIMEOUT_EXPIRED){
+                result = GL32.glClientWaitSync(fence, 0, 1000000); // wait in 1ms steps
+            }
+            GL32.glDeleteSync(fence);
+            fences[section] = 0;
+        }
+    }
+
+    /** Unmaps (if need be) and deletes the GL buffer object along with any outstanding fences */
+    private void release(){
+        for(int i = 0; i < SECTIONS; i++){
+            if(fences[i] != 0){
+                GL32.glDeleteSync(fences[i]);
+                fences[i] = 0;
+            }
+        }
+        if(mapped != null){
+            GL15.glBindBuffer(target, id);
+            GL15.glUnmapBuffer(target);
+            mapped = null;
+        }
+        GL15.glDeleteBuffers(id);
+        capacity = 0;
+    }
+
+    long align(long bytes){
+        return (bytes + alignment - 1) / alignment * alignment;
+
+    }
+
+    private static long bytes(Buffer data){
+        if(data instanceof FloatBuffer || data instanceof IntBuffer){
+            return 4L * data.remaining();
+        }
+        if(data instanceof ShortBuffer){
+            return 2L * data.remaining();
+        }
+        return data.remaining();
+    }
+
+    private static boolean supportsPersistence(){
+        GLCapabilities caps = GL.getCapabilities();
+        return caps.OpenGL44 || caps.GL_ARB_buffer_storage;
+    }
+}
@@ -9,6 +9,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static GlooKit.GlooAPI.GlooCore.DEFAULT;
 
@@ -21,6 +23,15 @@ import static GlooKit.GlooAPI.GlooCore.DEFAULT;
  *
  * Textures can be added with a String to the filepath of the .png file they come from
  * Textures can only come from .png files
+ * A Texture from a file is not decoded until its pixels or size are first needed, so a TextureAtlas restored from its
+ * cache never has to decode it at all @see AtlasCache
+ *
+ * A streamed Texture is handed out before its file is even decoded, and stands in for the "null" texture (it has the
+ * "null" texture's coordinates) until its own pixels have reached the GPU @see TextureAtlas#streamTexture(String)
+ *
+ * A Texture from a file can be evicted from a TextureAtlas that is over its memory budget, if it holds no references
+ * and has gone undrawn the longest. It then stands in for the "null" texture again, and streams back in the next time
+ * it is used. @see TextureAtlas#setResidentBudget(long)
  *
  * Author: Eli Jergensen and Duncan Walter
  * Documenter: Eli Jergensen
@@ -33,11 +44,19 @@ public class Texture implements Comparable<Texture> {
     private int width;
     private int height;
     private ByteBuffer byteBuffer;
+    private final String path; // the .png file this Texture comes from, or null if it was made from a buffer
     // Properties granted by the TextureAtlas
     private Vector offset = new Vector(0, 0, 0);
     private Vector ST = new Vector(0, 0, 0);
     private Vector UV = new Vector(0, 0, 0);
-    private int W = 0;
+    private int layer = 0; // the page of a paged TextureAtlas this Texture is on (always 0 in a single texture atlas)
+    // Streaming
+    private volatile Texture stand; // the Texture whose coordinates this one shows until it lands, or null once it has
+    private boolean streaming; // true until the TextureAtlas takes this Texture in (it has no place in the atlas before then)
+    // Residency
+    private final AtomicInteger references = new AtomicInteger();
+    private volatile long lastUsed; // the frame this Texture was last drawn in (or placed in the atlas)
+    private final AtomicReference<TextureAtlas> evictedFrom = new AtomicReference<>(); // set while this Texture is evicted
 
     public final int handle;
     public final GlooApplication app;
@@ -51,7 +70,9 @@ public class Texture implements Comparable<Texture> {
      * @param filepath a String of the filepath of the .png file to be loaded
      * */
     public Texture(GlooApplication app, int textureHandle, String filepath) {
-        loadPNGTexture(filepath);
+        this.path = filepath;
+        this.width = -1; // not known until the file is decoded (or the size is taken from an atlas cache)
+        this.height = -1;
         this.handle = textureHandle;
         this.app = app;
     }
@@ -71,10 +92,30 @@ public class Texture implements Comparable<Texture> {
     public Texture(GlooApplication app, int textureHandle, ByteBuffer buffer, int width, int height) {
         this.handle = textureHandle;
         this.app = app;
+        this.path = null;
+
+        this.byteBuffer = buffer;
+        this.width = width;
+        this.height = height;
+        this.hasAlpha = Pixels.hasAlpha(buffer, width * height);
+    }
+
+    /**
+     * Constructs a Texture of coverage alone, one byte per pixel, for a single channel TextureAtlas. It is always
+     * treated as having alpha, since the coverage is its alpha
+     * @see TextureAtlas#setSingleChannel(boolean)
+     *
+     * @param buffer a ByteBuffer of the coverage of each pixel of this Texture
+     * */
+    Texture(GlooApplication app, int textureHandle, ByteBuffer buffer, int width, int height, boolean coverage) {
+        this.handle = textureHandle;
+        this.app = app;
+        this.path = null;
 
         this.byteBuffer = buffer;
         this.width = width;
         this.height = height;
+        this.hasAlpha = coverage || Pixels.hasAlpha(buffer, width * height);
     }
 
     /**
@@ -93,6 +134,7 @@ public class Texture implements Comparable<Texture> {
 
         this.app = app;
         this.handle = DEFAULT;
+        this.path = null;
 
         this.width = width;
         this.height = height;
@@ -106,6 +148,135 @@ public class Texture implements Comparable<Texture> {
         hasAlpha = false;
     }
 
+    /** Decodes the file of this Texture, if it has one and it has not been decoded yet */
+    synchronized void load(){
+        if(byteBuffer == null && path != null){
+            loadPNGTexture(path);
+        }
+    }
+
+    /**
+     * Takes the size and transparency of this Texture from an atlas cache, rather than decoding its file to find them
+     * @see AtlasCache
+     * */
+    final synchronized void useCached(int width, int height, boolean hasAlpha){
+        if(byteBuffer == null && path != null){
+            this.width = width;
+            this.height = height;
+            this.hasAlpha = hasAlpha;
+        }
+    }
+
+    /**
+     * Makes this a streamed Texture, which shows the coordinates of placeholder until it lands
+     * @see TextureAtlas#streamTexture(String)
+     * */
+    final void streamFrom(Texture placeholder){
+        this.stand = placeholder;
+        this.streaming = true;
+    }
+
+    /** Called by the TextureAtlas when it takes this streamed Texture in, once its file has been decoded */
+    final void arrive(){
+        streaming = false;
+
+    }
+
+    /**
+     * Makes this Texture show the coordinates of placeholder until it lands, while the TextureAtlas repacks to make room
+     * for it on the ThreadPool
+     * @see TextureAtlas#startRepack()
+     * */
+    final void standIn(Texture placeholder){
+        stand = placeholder;
+
+    }
+
+    /**
+     * Swaps the coordinates of the placeholder for this Texture's own, once its pixels are on the GPU
+     * The swap is a single volatile write, so anything reading the coordinates sees either the placeholder or this
+     * Texture, with every coordinate set
+     * */
+    final void land(){
+        stand = null;
+
+    }
+
+    /** @return true if this is a streamed Texture the TextureAtlas has not taken in yet */
+    boolean isStreaming(){
+        return streaming;
+
+    }
+
+    /** @return true once a streamed Texture shows its own coordinates (always true for any other Texture, but one waiting on a repack) */
+    boolean isLanded(){
+        return stand == null;
+
+    }
+
+    /**
+     * Keeps this Texture in its TextureAtlas however long it goes undrawn, until it is released again
+     * Every retain() needs a matching release()
+     *
+     * @return this Texture
+     * */
+    public Texture retain(){
+        references.incrementAndGet();
+        return this;
+    }
+
+    /** Gives up a reference taken with retain() */
+    public void release(){
+        if(references.decrementAndGet() < 0){
+            references.incrementAndGet();
+            new Exception("ERROR: a Texture was released more times than it was retained").printStackTrace();
+        }
+    }
+
+    int references(){
+        return references.get();
+
+    }
+
+    /**
+     * Stamps this Texture with the current frame, so that the TextureAtlas knows it is in use, and brings it back if it
+     * has been evicted. Anything that draws a Texture calls this when it draws, as Rect does
+     * @see TextureAtlas#setResidentBudget(long)
+     * */
+    public void use(){
+        lastUsed = app.getCore().frame();
+        if(evictedFrom.get() != null){
+            TextureAtlas atlas = evictedFrom.getAndSet(null);
+            if(atlas != null){ // only one of any threads using it at once recalls it
+                atlas.recall(this);
+            }
+        }
+    }
+
+    /** Stamps this Texture as if it had been drawn in frame (used by the TextureAtlas when it places the Texture) */
+    final void stamp(long frame){
+        lastUsed = frame;
+
+    }
+
+    long lastUsed(){
+        return lastUsed;
+
+    }
+
+    /**
+     * Takes this Texture out of its TextureAtlas: it stands in for placeholder again, and lets go of its pixels (it is
+     * decoded from its file again when it is recalled)
+     * */
+    final void evict(Texture placeholder, TextureAtlas atlas){
+        stand = placeholder;
+        streaming = true;
+        synchronized (this){
+            byteBuffer = null;
+        }
+        evictedFrom.set(atlas);
+    }
+
     /**
      * Load in a ByteBuffer from a filepath using the PNGDecoder library
      * @param filename a String of the filepath of the .png file to be loaded
@@ -136,16 +307,8 @@ public class Texture implements Comparable<Texture> {
             System.exit(-350);
         }
 
-        hasAlpha = false;
-
         /* Determine whether any of the pixels have an alpha less than 1 */
-        for(int i = 0; i < width * height * 4; i++){
-            i += 3;
-            if(buffer.get(i) != (byte)255){
-                hasAlpha = true;
-                break;
-            }
-        }
+        hasAlpha = Pixels.hasAlpha(buffer, width * height);
 
         // Copy over the fields into the Texture
         this.byteBuffer = buffer;
@@ -164,17 +327,27 @@ public class Texture implements Comparable<Texture> {
         this.offset = offset;
     }
 
+    /**
+     * Notifies this Texture of the page it is on in a paged TextureAtlas
+     * @see TextureAtlas#setPageSize(int)
+     * */
+    final void useLayer(int layer){
+        this.layer = layer;
+    }
+
     /**
      * Notifies this Texture of the pointSize of the final TextureAtlas
      * This is called by the TextureAtlas after finishing texture packing
      * @see TextureAtlas#packTextures()
      *
-     * The Texture then figures out its upper left and lower right corners as well as the width of the TextureAtlas
+     * The Texture then figures out its upper left and lower right corners
      * */
     final void useSize(Vector size){
+        if(streaming){
+            return; // not in the atlas yet (and not necessarily decoded)
+        }
         ST = new Vector(offset.x() / size.x(), offset.y() / size.y(), 0);
-        UV = new Vector(ST.x() + width / size.x(), ST.y() + height / size.y(), 0);
-        W = (int)size.x();
+        UV = new Vector(ST.x() + width() / size.x(), ST.y() + height() / size.y(), 0);
     }
 
     /**
@@ -187,27 +360,48 @@ public class Texture implements Comparable<Texture> {
     }
 
     /** These are dedicated getter functions that read more naturally */
-    public float S(){return ST.x();}
-    public float T(){return ST.y();}
-    public float U(){return UV.x();}
-    public float V(){return UV.y();}
+    public float S(){Texture s = stand; return s != null ? s.S() : ST.x();}
+    public float T(){Texture s = stand; return s != null ? s.T() : ST.y();}
+    public float U(){Texture s = stand; return s != null ? s.U() : UV.x();}
+    public float V(){Texture s = stand; return s != null ? s.V() : UV.y();}
+    public int layer(){Texture s = stand; return s != null ? s.layer() : layer;}
 
-    public int width (){return width ;}
-    public int height(){return height;}
+    public int width (){if(width  < 0) load(); return width ;}
+    public int height(){if(height < 0) load(); return height;}
 
     public boolean hasAlpha(){
+        if(width < 0) load();
         return hasAlpha;
 
     }
 
+    /**
+     * @return true if every pixel this Texture shows is known to be fully opaque, so that anything drawing it in a solid
+     * color can be drawn without blending. A streamed or evicted Texture shows its placeholder, and a Texture whose
+     * file has not been decoded yet is not known to be opaque (this never decodes it)
+     * @see GlooBatch#setOpaquePass(boolean)
+     * */
+    public boolean isOpaque(){
+        Texture s = stand;
+        if(s != null){
+            return s.isOpaque();
+        }
+        return width >= 0 && !hasAlpha;
+    }
+
+    /** @return the .png file this Texture comes from, or null if it was made from a buffer */
+    String path(){return path;}
+
     /**
      * These methods are used to help construct the giant ByteBuffer of the packed TextureAtlas
      * @see TextureAtlas#constructTextureFromBuffer(ByteBuffer, int, int, int)
      * */
     int getIndex(int y) {return 4 * y * width;}
-    int putIndex(int y) {return 4 * (int)(offset.x() + (offset.y() + y) * W);}
+    int offsetX() {return (int)offset.x();}
+    int offsetY() {return (int)offset.y();}
+    int page() {return layer;} // the page this Texture itself is on, even while it stands in for another
 
-    protected ByteBuffer getBuffer(){return byteBuffer;}
+    protected ByteBuffer getBuffer(){load(); return byteBuffer;}
     
     /**
      * This comparator is used by the TextureAtlas to sort Textures first by height and then by width
@@ -219,14 +413,14 @@ public class Texture implements Comparable<Texture> {
      * */
     public int compareTo(Texture other) {
 
-        if (this.height > other.height) {
+        if (this.height() > other.height()) {
             return -1; // this is larger (this has a larger height than other)
-        } else if (this.height < other.height) {
+        } else if (this.height() < other.height()) {
             return 1; // this is smaller (this has a smaller height than other)
         } else {
-            if (this.width > other.width) {
+            if (this.width() > other.width()) {
                 return -1; // this is larger (this has a larger width than other)
-            } else if (this.width < other.width) {
+            } else if (this.width() < other.width()) {
                 return 1; // this is smaller (this has a smaller width than other)
             } else {
                 return 0; // Both this and other have the same height and width
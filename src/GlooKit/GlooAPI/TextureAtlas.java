@@ -2,16 +2,22 @@ package GlooKit.GlooAPI;
 
 import GlooKit.GlooFramework.GlooApplication;
 import GlooKit.Utils.Vector;
+import org.lwjgl.opengl.EXTTextureCompressionS3TC;
+import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
 
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Stream;
 
 /**
@@ -22,6 +28,29 @@ import java.util.stream.Stream;
  * fairly efficient, yet very fast method. Each texture is then told enough information for the texture to figure out
  * its own texture coordinates (Upper left and bottom right corners).
  *
+ * Once an atlas has been bound, Textures added to it afterwards (a font or sprite loaded at runtime) are inserted
+ * into the free space left in the atlas and uploaded on their own, rather than repacking and re-uploading the whole
+ * atlas. When the free space runs out the atlas doubles in size. @see TextureAtlas#setIncremental(boolean)
+ *
+ * A TextureAtlas can instead be split into pages of a fixed size, held in a single GL_TEXTURE_2D_ARRAY. A paged atlas
+ * has no size ceiling (beyond the number of layers the GPU supports), and each Texture knows which page it is on.
+ * @see TextureAtlas#setPageSize(int)
+ *
+ * Textures can also be streamed in: the Texture is handed out at once, showing the "null" texture, and its file is
+ * decoded in the background and uploaded a few Textures per frame. @see TextureAtlas#streamTexture(String)
+ *
+ * A TextureAtlas can be given a memory budget, over which it evicts the Textures that have gone undrawn the longest,
+ * and compacts itself (a few Textures per frame) once enough of it has been given up. @see TextureAtlas#setResidentBudget(long)
+ *
+ * A TextureAtlas can also be block compressed on the CPU before it is uploaded, for a quarter to an eighth of the video
+ * memory. @see TextureAtlas#setCompressed(boolean)
+ *
+ * The pixels of a TextureAtlas can be premultiplied by their alpha as they are packed, for blending with GL_ONE rather
+ * than GL_SRC_ALPHA. @see TextureAtlas#setPremultiplied(boolean)
+ *
+ * An atlas that holds only glyphs can hold their coverage alone, in a single channel, for a quarter of the memory.
+ * @see TextureAtlas#setSingleChannel(boolean)
+ *
  * A TextureAtlas is usually owned by a Batch (and can be shared by Batches), although FontFamilies also interact fairly directly with TextureAtlases
  * @see GlooBatch
  * @see Texture
@@ -38,6 +67,10 @@ public class TextureAtlas {
 
     private static int ATLAS_TEXTURE = -12341445; // The ID of the full texture of the atlas itself (given a really low number so no actual textures might receive it)
 
+    private static final int RESERVE = 4; // an incremental atlas is packed with 1/RESERVE of its height left free
+    private static final int FRAGMENTED = 4; // the atlas is compacted once 1/FRAGMENTED of it has been given up by evictions
+    private static final int IDLE = 2; // the number of frames a Texture must go undrawn before it can be evicted
+
     /* Structures for storing textures */
     private Map<String, Integer> handles;
     private List<Texture> textures;
@@ -45,6 +78,94 @@ public class TextureAtlas {
 
     private boolean isBound = false;
     private int textureUnit;
+    private TexturePacker packer = new SkylinePacker();
+
+    /* Incremental insertion */
+    private boolean incremental = true;
+    private Skyline skyline; // the free space of the atlas on the GPU, or null if the next bind must pack everything
+    private List<Texture> fresh = new ArrayList<>(); // the textures added since the last bind, which have no place in the atlas yet
+    private int generation; // counts the times the coordinates of textures already in the atlas have changed
+
+    /* Paged mode */
+    private int pageSize; // the requested width and height of each page, or 0 for a single texture
+    private List<Skyline> pages; // the free space of each page, or null if the next bind must pack everything
+    private int layers = 1; // the number of pages the GPU texture has room for
+
+    private boolean cached = true; // whether full packs are saved to (and restored from) an AtlasCache
+
+    private boolean compressed; // whether full packs are block compressed before they are uploaded
+    private int format; // the BlockCompressor format of the GPU texture, or 0 for RGBA
+
+    private boolean premultiplied; // whether the color of every pixel is multiplied by its alpha as it is packed
+    private int magFilter = GL11.GL_NEAREST; // how the GPU texture is sampled when it is drawn larger than it is
+    private boolean singleChannel; // whether every Texture is coverage alone, one byte per pixel, and the GPU texture GL_R8
+
+    /* Streaming */
+    private final Queue<Texture> decoded = new ConcurrentLinkedQueue<>(); // streamed textures decoded and waiting for a bind
+    private List<Texture> landing = new ArrayList<>(); // streamed textures uploaded but still showing the "null" texture
+    private long streamingBudget = 2000000; // nanoseconds per bind spent taking in streamed textures
+    private double nanosPerByte = 1; // moving average of the time insertion takes per byte of texture
+    private int unpackBuffer; // the pixel buffer object insertions are uploaded through (0 until the first one)
+
+    /* Residency */
+    private long residentBudget; // the bytes of Textures the atlas holds before it evicts any, or 0 for no limit
+    private long residentBytes; // the bytes of the Textures that have a place in the atlas
+    private long deadBytes; // the bytes of atlas space given up by evicted Textures, which only compaction gets back
+    private long evictedFrame = -1; // the last frame Textures were evicted in (eviction happens at most once a frame)
+    private Compaction compaction; // the compaction in progress, or null
+
+    /**
+     * A compaction of the atlas in progress: every Texture in the atlas has a place in a new, tightly packed GPU texture,
+     * and the Textures are copied over a few at a time. The atlas carries on drawing from the old texture until the
+     * copy is done
+     * */
+    private static final class Compaction {
+        List<Texture> moving; // every Texture with a place in the atlas (and any room)
+        int[] x;
+        int[] y;
+        int[] page;
+        int next; // the number of Textures copied so far
+        int atlasW;
+        int atlasH;
+        int layers;
+        Skyline skyline; // the free space of the new texture (a single texture atlas)
+        List<Skyline> pages; // the free space of each page of the new texture (a paged atlas)
+        int handle; // the new GPU texture
+        int read; // framebuffers the copies go through
+        int draw;
+    }
+
+    /* Relayouts */
+    private Relayout relayout; // a new GPU texture waiting to be switched to, or null
+    private Relayout repack; // a full repack under way on the ThreadPool, or null
+    private boolean reshaped; // the GPU texture is to be of another kind (paged or not, single channel or not), so it cannot be drawn from until it is packed anew
+    private int retired; // the GPU texture the frame being drawn was packed for, after a switch, or 0
+    private int retiredBinds; // the binds still to come that draw from the retired texture
+
+    /**
+     * A new GPU texture for the atlas and the layout of the Textures in it, waiting for the point between frames where
+     * streamed Textures land: the frame being drawn was packed with the coordinates of the old texture, so the atlas
+     * keeps drawing from that until the switch, and nothing else is inserted into either texture in the meantime
+     * @see TextureAtlas#landTextures()
+     *
+     * A full repack is laid out, composed and compressed into one of these on the ThreadPool before it is uploaded
+     * @see TextureAtlas#startRepack()
+     * */
+    private static final class Relayout {
+        int handle;
+        int atlasW;
+        int atlasH;
+        int layers;
+        int format; // the BlockCompressor format of the new texture, or 0 if it is not compressed
+        List<Texture> moved; // the Textures whose place in the atlas changes (none if the atlas only grew)
+        int[] x;
+        int[] y;
+        int[] page;
+        Skyline skyline;
+        List<Skyline> pages;
+        List<Texture> landing = Collections.emptyList(); // Textures showing the "null" texture until the switch
+        volatile ByteBuffer pixels; // the repacked atlas, set once the ThreadPool is done with it
+    }
 
     private int atlasW;
     private int atlasH;
@@ -52,6 +173,7 @@ public class TextureAtlas {
 
     private int batchHandle;
     private GlooApplication app;
+    private Worker pool; // the ThreadPool of an atlas that belongs to no GlooApplication
 
     /**
      * Overloader for constructing a TextureAtlas with the default textureUnit (GL13.GL_TEXTURE0)
@@ -86,6 +208,276 @@ public class TextureAtlas {
         this.app = app;
     }
 
+    /**
+     * Constructs a TextureAtlas that belongs to no GlooApplication, which Textures and fonts can be added to (with the
+     * work spread over pool) but which can never be bound. This is for tools and benchmarks that run without a window
+     *
+     * @param pool the ThreadPool fonts added to the atlas are rasterized on
+     * */
+    public TextureAtlas(Worker pool){
+        this((GlooApplication) null, GL13.GL_TEXTURE0);
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the TexturePacker that decides where each Texture goes when the atlas is next packed
+     * The default is a SkylinePacker (paged atlases always fill their pages the way a SkylinePacker would)
+     * @see TexturePacker
+     * */
+    public synchronized void setPacker(TexturePacker packer){
+        this.packer = packer;
+        isBound = false;
+        skyline = null;
+    }
+    public TexturePacker getPacker(){
+        return packer;
+
+    }
+
+    /**
+     * Chooses whether Textures added after the atlas has been bound are inserted into the free space of the atlas
+     * (the default) or the whole atlas is repacked and re-uploaded on the next bind
+     *
+     * Incremental insertion uploads only the new Textures with glTexSubImage2D, and leaves every Texture already in the
+     * atlas where it was. Free space is tracked with a Skyline, so space freed under it is not reused; an atlas that has
+     * grown a lot at runtime can be tightened up again with a full repack (setIncremental(false), bind, and back).
+     * */
+    public synchronized void setIncremental(boolean incremental){
+        this.incremental = incremental;
+        if(!incremental){
+            isBound = false;
+            skyline = null;
+        }
+    }
+    public boolean isIncremental(){
+        return incremental;
+
+    }
+
+    /**
+     * Chooses whether the atlas is saved to disk after it is packed, so that the next launch can map it straight from
+     * the file instead of decoding and packing every Texture again (the default is true)
+     * @see AtlasCache
+     *
+     * Only atlases made entirely of Textures from files are cached
+     * */
+    public void setCached(boolean cached){
+        this.cached = cached;
+
+    }
+    public boolean isCached(){
+        return cached;
+
+    }
+
+    /**
+     * Chooses whether the atlas is block compressed (on the ThreadPool) before it is uploaded: BC1 if every Texture is
+     * opaque, or BC3 if any has transparency. This takes
+     * effect (with a full repack) on the next bind. Every mipmap level is compressed ahead of time, since the GPU cannot
+     * generate mipmaps of a compressed texture, and a cached atlas keeps its compressed blocks rather than its pixels
+     * @see BlockCompressor
+     *
+     * Compression suits large atlases that rarely change, like big sprite sheets: it takes a quarter (BC3) or an eighth
+     * (BC1) of the memory and upload bandwidth, but blocks cannot be updated in place, so Textures added to a compressed
+     * atlas (streamed ones included) cause a full repack rather than an insertion, and evictions are only reclaimed by a
+     * full repack rather than by compaction. Sharp edged pixel art also loses more to compression than smooth art does.
+     * Without GL_EXT_texture_compression_s3tc the atlas stays uncompressed
+     * */
+    public synchronized void setCompressed(boolean compressed){
+        if(compressed != this.compressed){
+            this.compressed = compressed;
+            isBound = false;
+            skyline = null;
+            pages = null;
+        }
+    }
+    public boolean isCompressed(){
+        return compressed;
+
+    }
+
+    /**
+     * Chooses whether the color of every pixel is multiplied by its alpha as the Textures are packed and uploaded, which
+     * takes effect (with a full repack) on the next bind. Premultiplied pixels are blended with GL_ONE,
+     * GL_ONE_MINUS_SRC_ALPHA, and the shaders of every GlooBatch drawing from the atlas are compiled with PREMULTIPLIED
+     * defined, so they premultiply the vertex colors to match
+     * @see GlooBatch#enableBlending()
+     *
+     * Filtering premultiplied pixels never bleeds the color of fully transparent pixels (black, as often as not) into
+     * the edges of a sprite, as it does with straight alpha when a sprite is drawn smaller or between pixels, and it
+     * leaves the color of a compressed atlas to describe only what can be seen. Opaque Textures are copied as they are
+     * */
+    public synchronized void setPremultiplied(boolean premultiplied){
+        if(premultiplied != this.premultiplied){
+            this.premultiplied = premultiplied;
+            isBound = false;
+            skyline = null;
+            pages = null;
+        }
+    }
+    public boolean isPremultiplied(){
+        return premultiplied;
+
+    }
+
+    /**
+     * Chooses how the atlas is sampled when a Texture is drawn larger than it is: GL_NEAREST (the default) keeps the
+     * pixels square, and GL_LINEAR blends between them, which distance field glyphs need to find their edge between
+     * pixels. Takes effect (with a full repack) on the next bind
+     * @see GlooFontFamily#isDistanceField()
+     * */
+    public synchronized void setMagFilter(int magFilter){
+        if(magFilter != this.magFilter){
+            this.magFilter = magFilter;
+            isBound = false;
+            skyline = null;
+            pages = null;
+        }
+    }
+    public int getMagFilter(){
+        return magFilter;
+
+    }
+
+    /**
+     * Chooses whether the atlas holds coverage alone: one byte per pixel, stored as GL_R8 and swizzled so that it
+     * samples as white with the coverage as its alpha (or as the coverage in every channel, if the atlas is also
+     * premultiplied). That is all a glyph is, so TextBatch keeps its glyphs this way, in a quarter of the memory of RGBA
+     * (on the GPU and in every buffer on the way there). The "null" texture samples as opaque white either way
+     * @see GlooFontFamily
+     *
+     * Only Textures made from buffers, one byte per pixel, can be added to a single channel atlas (not .png files), and
+     * it is never block compressed. This must be chosen before any Texture is added
+     * */
+    public synchronized void setSingleChannel(boolean singleChannel){
+        if(textures.size() > 1){
+            new Exception("ERROR: The channels of a TextureAtlas must be chosen before any Texture is added").printStackTrace();
+            return;
+        }
+        if(singleChannel != this.singleChannel){
+            this.singleChannel = singleChannel;
+            isBound = false;
+            reshaped = true;
+            skyline = null;
+            pages = null;
+        }
+    }
+    public boolean isSingleChannel(){
+        return singleChannel;
+
+    }
+
+    /** @return the bytes each pixel of the atlas takes: 1 for a single channel atlas and 4 for RGBA */
+    private int bytesPerPixel(){
+        return singleChannel ? 1 : 4;
+
+    }
+
+    /**
+     * Sets how long each bind may spend taking in streamed Textures, which goes by how long inserting Textures has
+     * taken so far. At least one streamed Texture is taken in per bind, however large it is
+     * @see TextureAtlas#streamTexture(String)
+     *
+     * @param nanos the budget in nanoseconds (the default is 2ms)
+     * */
+    public void setStreamingBudget(long nanos){
+        this.streamingBudget = nanos;
+
+    }
+    public long getStreamingBudget(){
+        return streamingBudget;
+
+    }
+
+    /**
+     * Sets how many bytes of Textures the atlas holds before it starts evicting them. When it is over budget, the atlas
+     * evicts the Textures from files that have gone undrawn the longest (least recently used first), leaving out any
+     * that have been retained or were drawn in the last few frames. Glyphs and other Textures made from buffers are
+     * never evicted
+     * @see Texture#use()
+     * @see Texture#retain()
+     *
+     * An evicted Texture shows the "null" texture, and streams back in by itself the next time it is used. The space it
+     * leaves behind is not reused straight away; once enough of the atlas has been given up, the atlas is compacted
+     * into a new GPU texture, a few Textures each bind (within the streaming budget), and the texture coordinates of
+     * every Texture change when the compaction is done (between frames, as the generation shows)
+     * @see TextureAtlas#generation()
+     *
+     * @param bytes the budget in bytes (4 per pixel), or 0 for no limit (the default)
+     * */
+    public void setResidentBudget(long bytes){
+        this.residentBudget = bytes;
+
+    }
+    public long getResidentBudget(){
+        return residentBudget;
+
+    }
+
+    /** @return the bytes of the Textures that have a place in the atlas */
+    public long residentBytes(){
+        return residentBytes;
+
+    }
+
+    /**
+     * Splits the atlas into pages of a fixed size, held in the layers of a single GL_TEXTURE_2D_ARRAY, or puts it back
+     * into a single GL_TEXTURE_2D. This takes effect (with a full repack) on the next bind
+     *
+     * Each Texture then has a layer as well as texture coordinates, and the shaders of every GlooBatch drawing from the
+     * atlas are compiled with PAGED defined so they sample the right layer. Pages are filled first come first served
+     * (tallest Textures first on a full pack), and a new page is added whenever a Texture fits on none of them. Adding
+     * pages never moves a Texture, so a paged atlas keeps its texture coordinates as it grows.
+     *
+     * Textures larger than a page are given a page size large enough to hold them (up to GL_MAX_TEXTURE_SIZE)
+     * @see GlooBatch#setPagedTextures(int)
+     *
+     * @param pageSize the width and height of each page in pixels, or 0 for a single texture (the default)
+     * */
+    public synchronized void setPageSize(int pageSize){
+        if(pageSize != this.pageSize){
+            this.pageSize = pageSize;
+            isBound = false;
+            reshaped = true;
+            skyline = null;
+            pages = null;
+        }
+    }
+    public int getPageSize(){
+        return pageSize;
+
+    }
+    public boolean isPaged(){
+        return pageSize != 0;
+
+    }
+
+    /** @return the texture target the atlas is bound to: GL_TEXTURE_2D_ARRAY if it is paged, GL_TEXTURE_2D if not */
+    int target(){
+        return pageSize != 0 ? GL30.GL_TEXTURE_2D_ARRAY : GL11.GL_TEXTURE_2D;
+
+    }
+
+    /**
+     * Textures keep their texture coordinates when others are inserted around them, but not when the atlas is repacked
+     * or grows, so anything that holds on to texture coordinates (rather than asking for them every frame) can compare
+     * generations to know when to fetch them again
+     *
+     * @return a number that changes whenever the texture coordinates of Textures already in the atlas change
+     * */
+    public int generation(){
+        return generation;
+
+    }
+
+    /**
+     * @return the ThreadPool of the GlooApplication this atlas belongs to (used by GlooFontFamily to rasterize glyphs)
+     * */
+    Worker getPool(){
+        return app != null ? app.getPool() : pool;
+
+    }
+
     /**
      * @return an integer corresponding to the GL Texture handle of the TextureAtlas itself
      * */
@@ -103,7 +495,8 @@ public class TextureAtlas {
      * @see GlooCharacter
      *
      * Adds a texture to the TextureAtlas by taking the ByteBuffer, along with the width and height of the buffer
-     * @param buffer a ByteBuffer that is the (already filled) ByteBuffer containing the pixels (RGBA)
+     * @param buffer a ByteBuffer that is the (already filled) ByteBuffer containing the pixels (RGBA, or coverage alone
+     *               in a single channel atlas)
      * @param width an integer corresponding to the number of pixels in a row of the texture
      * @param height an integer corresponding to the number of pixels in a column of the texture
      *
@@ -115,12 +508,32 @@ public class TextureAtlas {
         /* Set isBound to false if any state changes */
         isBound = false;
 
-        Texture texture = new Texture(app, textures.size(), buffer, width, height); // make a new texture from a buffer
+        Texture texture = new Texture(app, textures.size(), buffer, width, height, singleChannel); // make a new texture from a buffer
         textures.add(texture); // addBatch it to the arraylist
+        fresh.add(texture);
         //handles.put(key, textures.pointSize() - 1); // addBatch the filePath to the HashMap
         return textures.size() - 1;
     }
 
+    /**
+     * Adds many textures from buffers at once, as addTexture(ByteBuffer, int, int) does for each, taking the lock of
+     * the atlas once for all of them rather than once apiece. GlooFontFamily adds the glyphs it rasterizes in parallel
+     * this way
+     *
+     * @return the Textures, in the order of the buffers
+     * */
+    public synchronized Texture[] addTextures(ByteBuffer[] buffers, int[] widths, int[] heights){
+        isBound = false;
+
+        Texture[] added = new Texture[buffers.length];
+        for(int i = 0; i < buffers.length; i++){
+            added[i] = new Texture(app, textures.size(), buffers[i], widths[i], heights[i], singleChannel);
+            textures.add(added[i]);
+            fresh.add(added[i]);
+        }
+        return added;
+    }
+
     /**
      * This is the general purpose method for adding a Texture to the TextureAtlas.
      *
@@ -132,20 +545,24 @@ public class TextureAtlas {
      *
      * if filePath is instead a directory,
      * recursively adds all files in all subdirectories to the TextureAtlas only if they are .png files
+     * (in sorted order, so the handles and the packing are the same from one launch to the next)
+     *
+     * Nothing is decoded here: the files are decoded (in parallel) when the atlas is next bound, unless the atlas can
+     * be restored from its cache. To decode them in the background instead, use loadTexture(String)
      *
      * @return an integer corresponding to the handle of this Texture in the TextureAtlas or -1
      * Returns the handle if filePath is a file path
      * Returns -1 if filePath is instead a directory
      * Handles can be used in the getTexture method to retrieve the Texture from the TextureAtlas
      * */
-    protected int addTexture(String filePath){
+    protected synchronized int addTexture(String filePath){
 
         if (Files.isDirectory(Paths.get(filePath))) {
             /* This is a directory of files */
 
             try {
                 Stream<Path> paths = Files.walk(Paths.get(filePath)); // get the full list of all filePaths in this directory (or subdirectories)
-                paths.forEach( (file) -> {
+                paths.sorted().forEach( (file) -> {
                     if (Files.isRegularFile(file)) { // make sure the file is regular
                         String filePathString = file.toString();
                         if(filePathString.substring(filePathString.length() - 4).equals(".png")) { // check to see the file is a .png
@@ -153,6 +570,7 @@ public class TextureAtlas {
                         }
                     }
                 });
+                paths.close();
             } catch (Exception e){
                 e.printStackTrace();
                 System.exit(400);
@@ -163,24 +581,156 @@ public class TextureAtlas {
         } else {
             /* This is not a directory of files, but a file itself */
 
-            // The Math.max() call allows this to work on both Windows and Unix filesystems
-            String key = filePath.substring(Math.max(filePath.lastIndexOf("\\") + 1, filePath.lastIndexOf("/") + 1), filePath.lastIndexOf("."));
+            String key = key(filePath);
 
             /* Check to see if the filePath has already been added */
             if (handles.get(key) != null) {
                 return handles.get(key); // if its already been added, just return the handle previously given
             }
+            refuseFile(filePath);
 
             /* Set isBound to false if any state changes */
             isBound = false;
 
             Texture texture = new Texture(app, textures.size(), filePath); // make a new texture
             textures.add(texture); // addBatch it to the arraylist
+            fresh.add(texture);
             handles.put(key, textures.size() - 1); // addBatch the filePath to the HashMap
             return textures.size() - 1;
         }
     }
 
+    /**
+     * Adds a single .png file to the TextureAtlas without waiting for it: the Texture is returned at once, with the
+     * texture coordinates of the "null" texture, and its file is decoded on the ThreadPool
+     *
+     * Decoded Textures are taken in by the following binds, as many per bind as the streaming budget allows, and
+     * uploaded through a pixel buffer object. Once its pixels are on the GPU the Texture swaps to its own coordinates
+     * (in one step, between frames), so anything that asks a Texture for its coordinates when it draws, as Rect does,
+     * shows the real image from then on. The generation changes when Textures land, for anything that does not.
+     * @see TextureAtlas#setStreamingBudget(long)
+     * @see TextureAtlas#generation()
+     *
+     * @return the Texture, which can be drawn straight away (if the file has already been added, its Texture)
+     * */
+    public synchronized Texture streamTexture(String filePath){
+        String key = key(filePath);
+        Integer existing = handles.get(key);
+        if(existing != null){
+            return textures.get(existing);
+        }
+        refuseFile(filePath);
+
+        Texture texture = new Texture(app, textures.size(), filePath);
+        texture.streamFrom(textures.get(0));
+        textures.add(texture);
+        handles.put(key, textures.size() - 1);
+        recall(texture);
+        return texture;
+    }
+
+    /**
+     * Adds a texture from a buffer, as addTexture(ByteBuffer, int, int) does, to an atlas that may already be drawing:
+     * the Texture shows the coordinates of the "null" texture until the next bind has inserted and uploaded it, and
+     * then lands just as a streamed Texture does, with the generation changing. Everything added between two binds is
+     * inserted by the one bind
+     * This is used by GlooFontFamily for the glyphs it rasterizes on first use
+     * @see GlooFontFamily#getCharacter(int, int)
+     *
+     * @return the Texture, which knows whether it has landed yet
+     * */
+    synchronized Texture streamTexture(ByteBuffer buffer, int width, int height){
+        isBound = false;
+
+        Texture texture = new Texture(app, textures.size(), buffer, width, height, singleChannel);
+        texture.streamFrom(textures.get(0));
+        texture.arrive(); // its pixels are already here, so the next bind takes it in
+        textures.add(texture);
+        fresh.add(texture);
+        landing.add(texture);
+        return texture;
+    }
+
+    /**
+     * Decodes a streamed or evicted Texture on the ThreadPool, after which it is taken in by a bind
+     * @see Texture#use()
+     * */
+    void recall(Texture texture){
+        app.getPool().task(() -> {
+            texture.load();
+            decoded.add(texture);
+        });
+    }
+
+    /** Stops a .png file (which is always RGBA) from being added to a single channel atlas */
+    private void refuseFile(String filePath){
+        if(singleChannel){
+            new Exception("ERROR: " + filePath + " cannot be added to a single channel TextureAtlas").printStackTrace();
+            System.exit(300);
+        }
+    }
+
+    /**
+     * @return the name a file is known by in the handle map (the name of the file without its extension)
+     * The Math.max() call allows this to work on both Windows and Unix filesystems
+     * */
+    private static String key(String filePath){
+        return filePath.substring(Math.max(filePath.lastIndexOf("\\") + 1, filePath.lastIndexOf("/") + 1), filePath.lastIndexOf("."));
+
+    }
+
+    /**
+     * Adds a texture (or directory of textures) to the TextureAtlas just as addTexture(String) does, and then decodes
+     * the new Textures in the background on the ThreadPool, several at a time
+     * @see TextureAtlas#addTexture(String)
+     *
+     * If the atlas can be restored from its cache as it now stands, nothing needs decoding and the load finishes at once
+     * @see AtlasCache
+     *
+     * @return a TextureLoad to follow the progress of the decoding with
+     * */
+    public TextureLoad loadTexture(String filePath){
+        List<Texture> added;
+        AtlasCache cache;
+        String packerName;
+        int pageSize;
+        boolean incremental;
+        boolean compressed;
+        boolean premultiplied;
+        List<Texture> snapshot;
+        synchronized (this){
+            int before = textures.size();
+            addTexture(filePath);
+            added = new ArrayList<>(textures.subList(before, textures.size()));
+            snapshot = new ArrayList<>(textures);
+            cache = cached ? AtlasCache.of(app.name, snapshot) : null;
+            packerName = packer.getClass().getName();
+            pageSize = this.pageSize;
+            incremental = this.incremental;
+            compressed = this.compressed;
+            premultiplied = this.premultiplied;
+        }
+
+        Worker pool = app.getPool();
+        TextureLoad load = new TextureLoad(pool, added.size());
+        load.run(pool.task(() -> {
+            AtlasCache.Layout layout = cache == null ? null : cache.read(packerName, pageSize, incremental, compressed, premultiplied, snapshot);
+            if(layout != null){
+                int first = snapshot.size() - added.size(); // the new textures are the last ones in the snapshot
+                for(int i = first; i < snapshot.size(); i++){
+                    snapshot.get(i).useCached(layout.widths[i], layout.heights[i], layout.alpha[i]);
+                    load.count();
+                }
+                return;
+            }
+            pool.parallelFor(added.size(), (i) -> {
+                added.get(i).load();
+                load.count();
+            });
+        }));
+        return load;
+    }
+
     /**
      * Gets the handle of a texture
      * @param texture a String that corresponds to the name of a texture (fileName minus the .png)
@@ -219,144 +769,905 @@ public class TextureAtlas {
 
     /**
      * Binds the TextureAtlas to the GPU, thereby creating a concrete implementation
-     * This call can be rather intensive (up to half a frame) because it will pack the entire TextureAtlas
+     * The first bind can be rather intensive (up to half a frame) because it will pack the entire TextureAtlas. Later
+     * binds only insert the Textures added since the last one, and when that is not possible (a compressed atlas, or
+     * one with no room left) the atlas is packed again on the ThreadPool while it carries on drawing
+     * @see TextureAtlas#insertTextures()
+     * @see TextureAtlas#startRepack()
+     *
+     * This is cheap when nothing has been added, so it is called by every GlooBatch when it renders
+     *
+     * Each bind also takes in the streamed Textures that have finished decoding, as many as the streaming budget allows
+     * @see TextureAtlas#streamTexture(String)
      *
-     * @return an integer corresponding to the GPU's handle for the texture
+     * When the atlas moves to a new GPU texture (a finished compaction or repack, or a grown atlas), the frame being drawn was still packed with the
+     * old coordinates, so the switch waits until the Textures land, and this returns the old texture until then
+     * @see TextureAtlas#landTextures()
+     *
+     * @return an integer corresponding to the GPU's handle for the texture (the one this frame's coordinates are for)
      * To use this texture, call the GL11.glBindTexture(int target, int texture) method
      * */
-    public int bindAtlas(){
-        if(!isBound){
+    public synchronized int bindAtlas(){
+        if(retired != 0 && retiredBinds-- == 0){
+            GL11.glDeleteTextures(retired); // the last frame packed for it has been drawn
+            retired = 0;
+        }
+        finishRepack();
+        if(compaction == null && relayout == null && repack == null){
+            receiveTextures(); // streamed Textures wait for a compaction or repack to finish rather than cancel it
+        }
+        if(!isBound && relayout == null && repack == null){ // new Textures wait for the atlas to switch to its new texture
             isBound = true; // set the boolean for being bound to true
-            destroy();
-            handle = constructTextureFromBuffer(packTextures(), atlasW, atlasH, textureUnit);
+            abortCompaction(); // the compacted layout does not have room for the new Textures
+            boolean inserted = false;
+            if(incremental && format == 0 && (pageSize == 0 ? skyline != null : pages != null)){ // blocks cannot be inserted into
+                long time = System.nanoTime();
+                long bytes = 0;
+                for(Texture t : fresh){
+                    bytes += (long)bytesPerPixel() * t.width() * t.height();
+                }
+                inserted = insertTextures();
+                if(inserted && bytes > 0){ // keep track of how long insertion takes, for the streaming budget
+                    nanosPerByte = 0.9 * nanosPerByte + 0.1 * (System.nanoTime() - time) / bytes;
+                }
+                residentBytes += bytes;
+            }
+            if(!inserted && handle != 0 && !reshaped){
+                startRepack(); // there is a frame to draw from the atlas as it is, so it is not held up
+            } else if(!inserted){
+                GL11.glDeleteTextures(handle);
+                reshaped = false;
+                AtlasCache cache = cached ? AtlasCache.of(app.name, textures) : null;
+                ByteBuffer buffer = cache == null ? null : restoreCache(cache);
+                if(buffer != null){
+                    handle = constructTextureFromBuffer(buffer, atlasW, atlasH, layers, textureUnit);
+                } else {
+                    decodeTextures();
+                    buffer = packTextures();
+                    format = compression();
+                    if(format != 0){
+                        long time = System.nanoTime();
+                        buffer = BlockCompressor.compressLevels(buffer, atlasW, atlasH, layers, format, app.getPool());
+                        System.out.println("Took " + (System.nanoTime() - time)/1000000 + "ms to compress an atlas to " + buffer.capacity() / 1024 + "KB");
+                    }
+                    handle = constructTextureFromBuffer(buffer, atlasW, atlasH, layers, textureUnit);
+                    if(cache != null){
+                        saveCache(cache, buffer);
+                    }
+                }
+                generation += 1;
+                measureResidency(textures);
+            }
+            long frame = app.getCore().frame();
+            for(Texture t : fresh){
+                t.stamp(frame); // a Texture that has only just been placed has not had a chance to be drawn yet
+            }
+            fresh.clear();
         }
-        return handle;
+        if(relayout == null && repack == null){
+            evictTextures();
+            compactTextures();
+        }
+        int drawing = retired != 0 ? retired : handle; // the texture the frame about to be drawn was packed for
+        if(!app.isPipelined()){
+            landTextures(); // this frame has already been packed, so the Textures can land straight away
+        }
+        return drawing;
     }
 
     /**
-     * Packs the Textures into a single ByteBuffer using a fairly efficient and very quick method.
-     * Sorts Textures by height and then width
-     * Determines a maximum width of a row in the TextureAtlas's Texture
-     * Crams as many (of the largest remaining) Textures in one row as possible before moving on to the next row
-     * Additionally, to gain an extra boost on efficiently, every time a Texture is packed into a row,
-     * we check to see if another Texture can fit directly above it on the same row, and add the largest possible
-     * We call this "dirty packing" in the code below
-     *
-     * After packing all of the Textures, all of the Textures are informed of their location in the TextureAtlas
-     * so that they can individually determine their texture coordinates in the larger TextureAtlas Texture
-     *
-     * @return A ByteBuffer that is the final packed TextureAtlas (which can then be passed on to the GPU)
-     * @see TextureAtlas#constructTextureFromBuffer(ByteBuffer, int, int, int)
+     * Takes streamed Textures that have been decoded into the atlas, so that this bind places and uploads them, for as
+     * long as the time the insertions are expected to take fits in the streaming budget
      * */
-    private ByteBuffer packTextures() {
+    private void receiveTextures(){
+        long spent = 0;
+        Texture t;
+        while((t = decoded.peek()) != null){
+            long cost = (long)(nanosPerByte * bytesPerPixel() * t.width() * t.height());
+            if(spent > 0 && spent + cost > streamingBudget){
+                break; // the rest wait for the next bind
+            }
+            decoded.poll();
+            spent += Math.max(cost, 1);
+            t.arrive();
+            fresh.add(t);
+            landing.add(t);
+            isBound = false;
+        }
+    }
 
-        long time = System.nanoTime();
+    /**
+     * Swaps every streamed Texture uploaded so far over to its own coordinates, and switches the atlas to a new GPU
+     * texture if one is waiting. This must not happen while anything is reading texture coordinates to draw with, so
+     * a pipelined GlooBatch calls it between frames
+     * @see GlooBatch#flip()
+     * */
+    synchronized void landTextures(){
+        if(relayout != null){
+            switchTextures();
+        }
+        if(landing.isEmpty()){
+            return;
+        }
+        for(Texture t : landing){
+            t.land();
+        }
+        landing.clear();
+        generation += 1;
+    }
 
-        int atlasA = 0; // atlas area
-        atlasW = 0; // atlas width
-        atlasH = 0;
-
-        List<Texture> elements = new ArrayList<>();
-
-        for (Texture texture: textures) { // loop through all of the textures...
-            atlasA += texture.height() * texture.width(); // ...sum the areas
-            if(texture.width() > atlasW){
-                atlasW = texture.width(); // ...keep track of the largest width of a texture thus far
-            }
-            elements.add(texture); // ...and copy the textures over to a new list
-        }
-
-        atlasW = Math.max(atlasW, (int)Math.sqrt(atlasA * 1.11)); // multiply by 1.11 to help get a squarer end result
-
-        Collections.sort(elements); // sort the arraylist (see Texture#compareTo)
-
-        Vector offset = new Vector(0, 0, 0);
-        /* ----------------------------- Assign Coordinates to Textures ----------------------------------------------*/
-        while(elements.size() > 0){ // loop through all of the textures in elements
-
-            atlasH += elements.get(0).height(); // the first element of a row sets the height of the row
-
-            /* Assign textures along a row until nothing fits */
-            for(int i = 0; i < elements.size(); i++){
-                ////////////////////////////
-                Texture t = elements.get(i);
-                ////////////////////////////
-                if(offset.x() + t.width() <= atlasW){ // Check to see if this texture's width fits in the row
-                    // this texture may be added to the atlas here
-                    t.useOffset(new Vector(offset.x(), offset.y(), 0)); // let the texture know its offsets in the atlas
-                    elements.remove(i);
-                    i -= 1;
-                    ///////////////////
-                    // DIRTY PACKING //
-                    ///////////////////
-                    /* Dirty packing refers to the process of placing a smaller element on top of a larger one in a row
-                    *
-                    * Example:
-                    *
-                    * ████████████████ ████████████ ████████████
-                    * ████████████████ ████████████ ████████████
-                    * ████████████████ ████████████ XXXXXX
-                    * ████████████████               XXXXXX
-                    *
-                    * The texture marked by the x's is dirty packed
-                    * */
-                    int grime = -1;
-                    for(int j = elements.size() - 1; j >= 0; j--){
-                        if(elements.get(j).height() <= atlasH - offset.y() - t.height() && elements.get(j).width() <= t.width()){
-                            grime = j;
-                        }
-                    }
-                    if(grime != -1){
-                        elements.get(grime).useOffset(new Vector(offset.x(), offset.y() + t.height(), 0));
-                        elements.remove(grime);
+    /**
+     * Moves every Texture over to its place in the new GPU texture waiting in the relayout. The old texture is kept
+     * until the frame already packed for it has been drawn: the bind this one is part of, or, when pipelined, the next
+     * @see TextureAtlas#bindAtlas()
+     * */
+    private void switchTextures(){
+        Relayout r = relayout;
+        if(retired != 0){
+            GL11.glDeleteTextures(retired); // a switch only ever comes after the frame drawn from it
+        }
+        retired = handle;
+        retiredBinds = app.isPipelined() ? 1 : 0;
+        handle = r.handle;
+        place(r);
+        for(Texture t : r.landing){
+            t.land(); // placed by the repack, along with everything else
+        }
+        generation += 1;
+        relayout = null;
+    }
+
+    /**
+     * Lets every Texture know its place in a new layout of the atlas, and the size of the atlas, and takes on the free
+     * space the layout leaves for insertion (the GPU texture is left to the caller)
+     * */
+    private void place(Relayout r){
+        atlasW = r.atlasW;
+        atlasH = r.atlasH;
+        layers = r.layers;
+        format = r.format;
+        for(int i = 0; i < r.moved.size(); i++){
+            r.moved.get(i).useOffset(new Vector(r.x[i], r.y[i], 0));
+            r.moved.get(i).useLayer(r.page[i]);
+        }
+        for(Texture t : textures){
+            t.useSize(new Vector(atlasW, atlasH, 0));
+        }
+        skyline = r.skyline;
+        pages = r.pages;
+    }
+
+    /**
+     * Starts packing the entire atlas again on the ThreadPool: decoding, laying out, composing and (for a compressed
+     * atlas) compressing it, none of which needs OpenGL. The atlas carries on drawing from its GPU texture in the
+     * meantime, and the Textures added since the last bind show the "null" texture until it switches to the new one
+     * @see TextureAtlas#finishRepack()
+     *
+     * Textures added while the repack is under way wait for it to finish, and then all go into the next one, so
+     * however quickly they come in there is only ever one repack at a time
+     * */
+    private void startRepack(){
+        Relayout r = new Relayout();
+        List<Texture> list = new ArrayList<>(textures);
+        r.landing = new ArrayList<>(landing); // streamed Textures still waiting to land do so with the new texture
+        landing.clear();
+        for(Texture t : fresh){
+            if(t.isLanded()){
+                t.standIn(textures.get(0));
+                r.landing.add(t);
+            }
+        }
+        int maximum = GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE);
+        int maximumLayers = GL11.glGetInteger(GL30.GL_MAX_ARRAY_TEXTURE_LAYERS);
+        boolean compress = compressible();
+        repack = r;
+
+        getPool().task(() -> {
+            try {
+                long time = System.nanoTime();
+                getPool().parallelFor(list.size(), (i) -> {
+                    if(!list.get(i).isStreaming()){
+                        list.get(i).load();
                     }
-                    offset = new Vector(offset.x() + t.width(), offset.y(), 0);
+                });
+                layOut(r, list, maximum, maximumLayers);
+                r.format = compress ? compression(list) : 0;
+                ByteBuffer buffer = composeTextures(r);
+                if(r.format != 0){
+                    buffer = BlockCompressor.compressLevels(buffer, r.atlasW, r.atlasH, r.layers, r.format, getPool());
                 }
+                System.out.println("Took " + (System.nanoTime() - time)/1000000 + "ms to repack an atlas on the ThreadPool at " + efficiency(r) + "% efficiency");
+                r.pixels = buffer; // last, as it is what tells the atlas the repack is done
+            } catch (RuntimeException e){
+                e.printStackTrace();
+                System.exit(402);
             }
+        });
+    }
 
-            offset = new Vector(0, atlasH, 0);
+    /**
+     * Uploads the repack once the ThreadPool is done with it, and leaves it waiting for the switch between frames
+     * @see TextureAtlas#switchTextures()
+     * */
+    private void finishRepack(){
+        Relayout r = repack;
+        if(r != null && reshaped){ // laid out for the old kind of texture, so it is never uploaded
+            landing.addAll(r.landing); // they land once the atlas has been packed anew, later in this bind
+            repack = null;
+            return;
+        }
+        if(r == null || r.pixels == null){
+            return;
+        }
+        r.handle = constructTextureFromBuffer(r.pixels, r.atlasW, r.atlasH, r.layers, textureUnit, r.format);
+        r.pixels = null;
+        repack = null;
+        relayout = r;
+        measureResidency(r.moved);
+    }
+
+    /**
+     * @return the BlockCompressor format the next full pack is compressed to, or 0 if it is not compressed
+     * @see TextureAtlas#compression(List)
+     * */
+    private int compression(){
+        return compressible() ? compression(textures) : 0;
+
+    }
 
+    /** @return whether the next full pack is compressed (which takes asking OpenGL, so only on the thread that binds) */
+    private boolean compressible(){
+        if(!compressed || singleChannel){ // there is no block format for coverage alone here, and it is small already
+            return false;
+        }
+        if(!GL.getCapabilities().GL_EXT_texture_compression_s3tc){
+            System.out.println("GL_EXT_texture_compression_s3tc is not supported, so the atlas is not compressed");
+            compressed = false;
+            return false;
         }
+        return true;
+    }
 
-        for(Texture t : textures){
-            t.useSize(new Vector(atlasW, atlasH, 0)); // loop through all the textures once more and let them know the pointSize of the texture atlas
+    /** @return the block format for the Textures of a compressed atlas: BC1 if every one is known to be opaque, and BC3 if not */
+    private static int compression(List<Texture> list){
+        for(int i = 1; i < list.size(); i++){
+            Texture t = list.get(i);
+            if(!t.isStreaming() && t.hasAlpha()){
+                return BlockCompressor.BC3;
+            }
         }
+        return BlockCompressor.BC1;
+    }
 
-        /* ------------------------- End Assign Coordinates to Textures ----------------------------------------------*/
+    /** Adds up the bytes of every Texture with a place in the atlas, after a full pack (which leaves no dead space) */
+    private void measureResidency(List<Texture> placed){
+        residentBytes = 0;
+        deadBytes = 0;
+        for(Texture t : placed){
+            if(!t.isStreaming()){
+                residentBytes += (long)bytesPerPixel() * t.width() * t.height();
+            }
+        }
+    }
 
-        /* ------------------------ Make the Buffer to send off to the GPU -------------------------------------------*/
-        ByteBuffer aBuffer = ByteBuffer.allocateDirect(4 * atlasW * atlasH);
-        ByteBuffer tBuffer;
+    /**
+     * Evicts the least recently used Textures until the atlas is back under its resident budget (or there are none
+     * left that can go), and starts a compaction if enough of the atlas has been given up
+     * @see TextureAtlas#setResidentBudget(long)
+     * */
+    private void evictTextures(){
+        long frame = app.getCore().frame();
+        if(residentBudget == 0 || residentBytes <= residentBudget || frame == evictedFrame || compaction != null){
+            return;
+        }
+        evictedFrame = frame;
+
+        List<Texture> idle = new ArrayList<>();
+        for(int i = 1; i < textures.size(); i++){ // the "null" texture always stays
+            Texture t = textures.get(i);
+            if(t.path() != null && !t.isStreaming() && t.isLanded() && t.references() == 0 && frame - t.lastUsed() > IDLE){
+                idle.add(t);
+            }
+        }
+        idle.sort(Comparator.comparingLong(Texture::lastUsed));
+        for(Texture t : idle){
+            if(residentBytes <= residentBudget){
+                break;
+            }
+            long bytes = (long)bytesPerPixel() * t.width() * t.height();
+            t.evict(textures.get(0), this);
+            residentBytes -= bytes;
+            deadBytes += bytes;
+        }
+
+        if(deadBytes > 0 && deadBytes * FRAGMENTED >= (long)bytesPerPixel() * atlasW * atlasH * layers){
+            if(format == 0){
+                startCompaction();
+            } else { // compressed blocks cannot be copied into a new layout, so the atlas is packed again instead
+                startRepack();
+            }
+        }
+    }
 
+    /**
+     * Lays out every Texture with a place in the atlas afresh, as a full pack would, and makes the (empty) GPU texture
+     * they are to be copied into. Nothing in the atlas changes until the copy is done
+     * @see TextureAtlas#compactTextures()
+     * */
+    private void startCompaction(){
+        Compaction c = new Compaction();
+        c.moving = new ArrayList<>();
         for(Texture t : textures){
+            if(!t.isStreaming() && t.width() > 0 && t.height() > 0){
+                c.moving.add(t);
+            }
+        }
+        int count = c.moving.size();
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        for(int i = 0; i < count; i++){
+            widths[i] = c.moving.get(i).width();
+            heights[i] = c.moving.get(i).height();
+        }
+        c.x = new int[count];
+        c.y = new int[count];
+        c.page = new int[count];
+
+        if(pageSize == 0){
+            int[] size = packer.pack(widths, heights, c.x, c.y);
+            c.atlasW = size[0];
+            c.atlasH = incremental ? size[1] + size[1] / RESERVE : size[1];
+            c.layers = 1;
+            int maximum = GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE);
+            if(c.atlasW > maximum || c.atlasH > maximum){
+                return; // the packer could not do better than the atlas as it is
+            }
+            c.skyline = incremental ? Skyline.over(c.atlasW, widths, heights, c.x, c.y) : null;
+        } else {
+            c.atlasW = atlasW; // every page stays the same size
+            c.atlasH = atlasH;
+            c.pages = new ArrayList<>();
+            int[] at = new int[2];
+            for(int i : PackOrder.byHeight(widths, heights)){
+                c.page[i] = placeOnPage(c.pages, widths[i], heights[i], at);
+                c.x[i] = at[0];
+                c.y[i] = at[1];
+            }
+            c.layers = Math.max(c.pages.size(), 1);
+        }
+
+        c.handle = constructTextureFromBuffer(null, c.atlasW, c.atlasH, c.layers, textureUnit);
+        c.read = GL30.glGenFramebuffers();
+        c.draw = GL30.glGenFramebuffers();
+        compaction = c;
+    }
 
-            tBuffer = t.getBuffer();
+    /**
+     * Copies the next few Textures of the compaction in progress, as many as the streaming budget allows, from the old
+     * GPU texture to the new one. The copies never leave the GPU (they are framebuffer blits), so evicted Textures are
+     * simply left behind. Once every Texture has been copied the atlas switches over to the new texture
+     * */
+    private void compactTextures(){
+        Compaction c = compaction;
+        if(c == null){
+            return;
+        }
+
+        GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, c.read);
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, c.draw);
+        if(pageSize == 0){
+            GL30.glFramebufferTexture2D(GL30.GL_READ_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D, handle, 0);
+            GL30.glFramebufferTexture2D(GL30.GL_DRAW_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D, c.handle, 0);
+        }
+        long spent = 0;
+        while(c.next < c.moving.size()){
+            Texture t = c.moving.get(c.next);
+            long cost = (long)(nanosPerByte * bytesPerPixel() * t.width() * t.height());
+            if(spent > 0 && spent + cost > streamingBudget){
+                break; // the rest are copied on the next bind
+            }
+            spent += Math.max(cost, 1);
+            if(pageSize != 0){
+                GL30.glFramebufferTextureLayer(GL30.GL_READ_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, handle, 0, t.page());
+                GL30.glFramebufferTextureLayer(GL30.GL_DRAW_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, c.handle, 0, c.page[c.next]);
+            }
+            int x = c.x[c.next];
+            int y = c.y[c.next];
+            GL30.glBlitFramebuffer(t.offsetX(), t.offsetY(), t.offsetX() + t.width(), t.offsetY() + t.height(),
+                    x, y, x + t.width(), y + t.height(), GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST);
+            c.next += 1;
+        }
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+        if(c.next < c.moving.size()){
+            return;
+        }
+
+        // every Texture has been copied, so the atlas switches over to the new texture once this frame is packed
+        GL30.glDeleteFramebuffers(c.read);
+        GL30.glDeleteFramebuffers(c.draw);
+        GL13.glActiveTexture(textureUnit);
+        GL11.glBindTexture(target(), c.handle);
+        GL30.glGenerateMipmap(target());
+        Relayout r = new Relayout();
+        r.handle = c.handle;
+        r.atlasW = c.atlasW;
+        r.atlasH = c.atlasH;
+        r.layers = c.layers;
+        r.moved = c.moving;
+        r.x = c.x;
+        r.y = c.y;
+        r.page = c.page;
+        r.skyline = c.skyline;
+        r.pages = c.pages;
+        relayout = r;
+        deadBytes = 0;
+        compaction = null;
+    }
+
+    /** Throws away the compaction in progress, if there is one */
+    private void abortCompaction(){
+        if(compaction != null){
+            GL11.glDeleteTextures(compaction.handle);
+            GL30.glDeleteFramebuffers(compaction.read);
+            GL30.glDeleteFramebuffers(compaction.draw);
+            compaction = null;
+        }
+    }
 
-            byte[] rowOfBytes = new byte[4*t.width()];
+    /** Decodes every Texture that has not been decoded yet (other than streamed ones), in parallel on the ThreadPool */
+    private void decodeTextures(){
+        app.getPool().parallelFor(textures.size(), (i) -> {
+            if(!textures.get(i).isStreaming()){
+                textures.get(i).load();
+            }
+        });
+    }
 
-            for (int i = 0; i < t.height(); i++){
+    /**
+     * Lays the atlas out the way its cache says, without decoding any of the Textures
+     *
+     * @return the pixels of the atlas, mapped from the cache file, or null if the cache is missing or out of date
+     * */
+    private ByteBuffer restoreCache(AtlasCache cache){
+        long time = System.nanoTime();
 
-                tBuffer.position(t.getIndex(i)); // set the position of the tBuffer to the first byte of the row
-                tBuffer.get(rowOfBytes, 0, 4*t.width()); // copy the entire row of bytes into the bytearray
+        AtlasCache.Layout layout = cache.read(packer.getClass().getName(), pageSize, incremental, compressed, premultiplied, textures);
+        if(layout == null){
+            return null;
+        }
 
-                aBuffer.position(t.putIndex(i)); // set the position of the aBuffer to the correct spot
-                aBuffer.put(rowOfBytes, 0, 4*t.width()); // copy the entire bytearray into aBuffer
+        atlasW = layout.atlasW;
+        atlasH = layout.atlasH;
+        layers = layout.layers;
+        format = layout.format;
+        for(int i = 0; i < textures.size(); i++){
+            Texture t = textures.get(i);
+            t.useCached(layout.widths[i], layout.heights[i], layout.alpha[i]);
+            t.useOffset(new Vector(layout.x[i], layout.y[i], 0));
+            t.useLayer(layout.layer[i]);
+            t.useSize(new Vector(atlasW, atlasH, 0));
+        }
 
+        // the free space of the atlas, for incremental insertion
+        skyline = null;
+        pages = null;
+        if(incremental && pageSize == 0){
+            skyline = Skyline.over(atlasW, layout.widths, layout.heights, layout.x, layout.y);
+        } else if(incremental){
+            pages = new ArrayList<>();
+            for(int page = 0; page < layers; page++){
+                int[] widths = new int[textures.size()]; // only the textures on this page take up room on it
+                for(int i = 0; i < widths.length; i++){
+                    widths[i] = layout.layer[i] == page ? layout.widths[i] : 0;
+                }
+                pages.add(Skyline.over(atlasW, widths, layout.heights, layout.x, layout.y));
             }
         }
 
-        aBuffer.flip();
+        System.out.println("Took " + (System.nanoTime() - time)/1000000 + "ms to load a cached atlas");
+        return layout.pixels;
+    }
+
+    /**
+     * Writes the freshly packed atlas to its cache on the ThreadPool, so that the write does not hold up the frame
+     * The layout is copied out here, and the buffer is never touched again by the atlas, so the atlas can carry on
+     * (and even be repacked) while the cache is written
+     * */
+    private void saveCache(AtlasCache cache, ByteBuffer buffer){
+        int count = textures.size();
+        String[] paths = new String[count];
+        AtlasCache.Layout layout = new AtlasCache.Layout();
+        layout.atlasW = atlasW;
+        layout.atlasH = atlasH;
+        layout.layers = layers;
+        layout.format = format;
+        layout.premultiplied = premultiplied;
+        layout.widths = new int[count];
+        layout.heights = new int[count];
+        layout.x = new int[count];
+        layout.y = new int[count];
+        layout.layer = new int[count];
+        layout.alpha = new boolean[count];
+        layout.pixels = buffer;
+        for(int i = 0; i < count; i++){
+            Texture t = textures.get(i);
+            paths[i] = t.path();
+            layout.widths[i] = t.width();
+            layout.heights[i] = t.height();
+            layout.x[i] = t.offsetX();
+            layout.y[i] = t.offsetY();
+            layout.layer[i] = t.page();
+            layout.alpha[i] = t.hasAlpha();
+        }
+        String packerName = packer.getClass().getName();
+        int pageSize = this.pageSize;
+        boolean incremental = this.incremental;
+        app.getPool().task(() -> cache.write(packerName, pageSize, incremental, paths, layout));
+    }
+
+    /**
+     * Places every Texture added since the atlas was last bound into the free space of the atlas, and uploads each one
+     * into its own sub-rectangle of the GPU texture
+     *
+     * Whenever a Texture does not fit, the atlas doubles (its shorter side first) up to GL_MAX_TEXTURE_SIZE. The
+     * Textures already in the atlas keep their pixel offsets, so growing is a matter of re-uploading the atlas at its
+     * new size; doubling means that only happens a logarithmic number of times however many Textures come in. The
+     * grown texture is switched to between frames, like a compacted one @see TextureAtlas#landTextures()
+     *
+     * @return true if every new Texture was inserted, or false if they could not all fit even in the largest texture
+     * the GPU supports (and the atlas has to be repacked from scratch)
+     * */
+    private boolean insertTextures(){
+        if(pageSize != 0){
+            return insertPages();
+        }
+        int maximum = GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE);
+        boolean grown = false;
+        int[] at = new int[2];
+        for(Texture t : fresh){
+            if(t.width() == 0 || t.height() == 0){ // empty textures (like the glyph for a space) take up no room at all
+                t.useOffset(new Vector(0, 0, 0));
+                continue;
+            }
+            while(!skyline.place(t.width(), t.height(), atlasH, at)){
+                if(atlasH <= atlasW && 2 * atlasH <= maximum){
+                    atlasH *= 2;
+                } else if(2 * atlasW <= maximum){
+                    atlasW *= 2;
+                    skyline.widen(atlasW);
+                } else if(2 * atlasH <= maximum){
+                    atlasH *= 2;
+                } else {
+                    return false;
+                }
+                grown = true;
+            }
+            t.useOffset(new Vector(at[0], at[1], 0));
+            t.useLayer(0);
+        }
+
+        if(grown){
+            // the normalized coordinates of every Texture change with the size of the atlas, so the frame being drawn
+            // (packed for the old size) carries on with the old texture, and the atlas switches once it is done
+            Relayout r = new Relayout();
+            r.handle = constructTextureFromBuffer(composeTextures(), atlasW, atlasH, layers, textureUnit);
+            r.atlasW = atlasW;
+            r.atlasH = atlasH;
+            r.layers = layers;
+            r.moved = Collections.emptyList();
+            r.skyline = skyline;
+            r.pages = pages;
+            relayout = r;
+            return true;
+        }
+
+        uploadTextures();
+        return true;
+    }
+
+    /**
+     * Places every Texture added since the atlas was last bound onto the first page with room for it, adding pages as
+     * needed, and uploads each one into its own sub-rectangle of its layer
+     *
+     * When the pages outnumber the layers of the GPU texture, the layers double (up to GL_MAX_ARRAY_TEXTURE_LAYERS) and
+     * the atlas is re-uploaded. The pages themselves never change size, so no Texture's coordinates change.
+     *
+     * @return true if every new Texture was inserted, or false if one is larger than a page or there are no more layers
+     * (and the atlas has to be repacked from scratch)
+     * */
+    private boolean insertPages(){
+        int maximum = GL11.glGetInteger(GL30.GL_MAX_ARRAY_TEXTURE_LAYERS);
+        int[] at = new int[2];
+        for(Texture t : fresh){
+            if(t.width() > atlasW || t.height() > atlasH){
+                return false;
+            }
+            placeOnPage(t, at);
+        }
+
+        if(pages.size() > layers){
+            if(pages.size() > maximum){
+                return false;
+            }
+            while(layers < pages.size()){
+                layers = Math.min(2 * layers, maximum);
+            }
+            for(Texture t : fresh){
+                t.useSize(new Vector(atlasW, atlasH, 0));
+            }
+            GL11.glDeleteTextures(handle);
+            handle = constructTextureFromBuffer(composeTextures(), atlasW, atlasH, layers, textureUnit);
+            return true;
+        }
+
+        uploadTextures();
+        return true;
+    }
+
+    /**
+     * Puts a Texture on the first page with room for it, starting a new page if none has any
+     * (the Texture must be no larger than a page)
+     * */
+    private void placeOnPage(Texture t, int[] at){
+        if(t.isStreaming() || t.width() == 0 || t.height() == 0){ // empty textures (like the glyph for a space) take up no room at all
+            t.useOffset(new Vector(0, 0, 0));
+            t.useLayer(0);
+            return;
+        }
+        int page = placeOnPage(pages, t.width(), t.height(), at);
+        t.useOffset(new Vector(at[0], at[1], 0));
+        t.useLayer(page);
+    }
+
+    /** @return the first of the pages with room for a w by h rectangle, which is placed there (a page is added if none has room) */
+    private int placeOnPage(List<Skyline> pages, int w, int h, int[] at){
+        return placeOnPage(pages, w, h, atlasW, atlasH, at);
+
+    }
+
+    /** @return the first of the pageW by pageH pages with room for a w by h rectangle, which is placed there (a page is added if none has room) */
+    private static int placeOnPage(List<Skyline> pages, int w, int h, int pageW, int pageH, int[] at){
+        int page = 0;
+        while(page < pages.size() && !pages.get(page).place(w, h, pageH, at)){
+            page += 1;
+        }
+        if(page == pages.size()){
+            pages.add(new Skyline(pageW));
+            pages.get(page).place(w, h, pageH, at);
+        }
+        return page;
+    }
+
+    /**
+     * Uploads every Texture added since the atlas was last bound into its own sub-rectangle of the GPU texture, which
+     * already has room for them, and then regenerates the mipmaps
+     *
+     * The pixels are copied into a pixel buffer object, one Texture after another, and each sub-rectangle is uploaded
+     * from its offset in that buffer. The copy is the only work done on this thread; the driver moves the pixels to
+     * the texture on its own time, rather than reading them out of client memory before glTexSubImage returns.
+     * The buffer is given new storage for every upload, so it never waits on the last one
+     * */
+    private void uploadTextures(){
+        long bytes = 0;
+        int pixel = bytesPerPixel();
+        for(Texture t : fresh){
+            t.useSize(new Vector(atlasW, atlasH, 0));
+            bytes += (long)pixel * t.width() * t.height();
+        }
+        if(bytes == 0){
+            return;
+        }
+
+        if(unpackBuffer == 0){
+            unpackBuffer = GL15.glGenBuffers();
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, unpackBuffer);
+        GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, bytes, GL15.GL_STREAM_DRAW);
+        ByteBuffer mapped = GL30.glMapBufferRange(GL21.GL_PIXEL_UNPACK_BUFFER, 0, bytes, GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_BUFFER_BIT);
+        int at = 0;
+        for(Texture t : fresh){
+            int row = pixel * t.width();
+            if(premultiplied && t.hasAlpha() && !singleChannel){
+                Pixels.premultiply(t.getBuffer(), 0, row, mapped, at, row, t.width(), t.height());
+            } else {
+                Pixels.copyRows(t.getBuffer(), 0, row, mapped, at, row, row, t.height());
+            }
+            at += row * t.height();
+        }
+        GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+
+        GL13.glActiveTexture(textureUnit);
+        GL11.glBindTexture(target(), handle);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+        long offset = 0; // where the texture's pixels start in the buffer
+        for(Texture t : fresh){
+            if(t.width() == 0 || t.height() == 0){
+                continue;
+            }
+            if(pageSize != 0){
+                GL12.glTexSubImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, t.offsetX(), t.offsetY(), t.page(), t.width(), t.height(), 1, pixelFormat(), GL11.GL_UNSIGNED_BYTE, offset);
+            } else {
+                GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, t.offsetX(), t.offsetY(), t.width(), t.height(), pixelFormat(), GL11.GL_UNSIGNED_BYTE, offset);
+            }
+            offset += (long)pixel * t.width() * t.height();
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+        GL30.glGenerateMipmap(target());
+    }
+
+    /**
+     * Packs the Textures into a single ByteBuffer
+     * The TexturePacker decides where each Texture goes and how large the atlas needs to be (a paged atlas fills its
+     * pages instead, see setPageSize(int))
+     * @see TextureAtlas#setPacker(TexturePacker)
+     *
+     * After packing all of the Textures, all of the Textures are informed of their location in the TextureAtlas
+     * so that they can individually determine their texture coordinates in the larger TextureAtlas Texture
+     *
+     * @return A ByteBuffer that is the final packed TextureAtlas (which can then be passed on to the GPU)
+     * @see TextureAtlas#constructTextureFromBuffer(ByteBuffer, int, int, int, int)
+     * */
+    private ByteBuffer packTextures() {
+
+        long time = System.nanoTime();
+
+        Relayout r = new Relayout();
+        layOut(r, textures, GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE), GL11.glGetInteger(GL30.GL_MAX_ARRAY_TEXTURE_LAYERS));
+        place(r); // let every texture know its offsets in the atlas, and the size of the atlas
+
+        ByteBuffer aBuffer = composeTextures(r);
 
-        /* -------------------- End Make the Buffer to send off to the GPU -------------------------------------------*/
         long packTime = System.nanoTime() - time; // Keep track of the time it took to do this process
-        System.out.println("Took " + packTime/1000000 + "ms to pack an atlas at " + 100 * atlasA / atlasW / atlasH + "% efficiency");
+        System.out.println("Took " + packTime/1000000 + "ms to pack an atlas" + (pageSize == 0 ? "" : " onto " + layers + " pages") + " at " + efficiency(r) + "% efficiency");
 
         return aBuffer;
     }
 
+    /**
+     * Lays the Textures out afresh, without telling them where they go or touching OpenGL, so that it can be done on
+     * the ThreadPool. The TexturePacker places them in a single texture, or, if the atlas is paged, they go tallest
+     * first onto the first page with room for them
+     *
+     * @param r the Relayout the size of the atlas and the place of each Texture are written to (the Textures are r.moved)
+     * @param list every Texture in the atlas, in order
+     * @param maximum GL_MAX_TEXTURE_SIZE
+     * @param maximumLayers GL_MAX_ARRAY_TEXTURE_LAYERS
+     * */
+    private void layOut(Relayout r, List<Texture> list, int maximum, int maximumLayers){
+        int count = list.size();
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        int largest = 0;
+        for(int i = 0; i < count; i++){
+            Texture t = list.get(i);
+            if(t.isStreaming()){
+                continue; // streamed textures that have not been taken in yet take up no room
+            }
+            widths[i] = t.width();
+            heights[i] = t.height();
+            largest = Math.max(largest, Math.max(widths[i], heights[i]));
+        }
+        r.moved = list;
+        r.x = new int[count];
+        r.y = new int[count];
+        r.page = new int[count];
+
+        int page = pageSize; // read once, since the atlas may be set to another page size while this runs on the ThreadPool
+        if(page == 0){
+            int[] size = packer.pack(widths, heights, r.x, r.y);
+            r.atlasW = size[0];
+            r.atlasH = incremental ? size[1] + size[1] / RESERVE : size[1]; // leave some room for textures added at runtime
+            r.layers = 1;
+            r.skyline = incremental ? Skyline.over(r.atlasW, widths, heights, r.x, r.y) : null; // the free space left for insertion
+            return;
+        }
+
+        // pages only grow past the page size if a single texture would not fit on one otherwise
+        page = Math.min(page, maximum);
+        while(page < largest && page < maximum){
+            page = Math.min(2 * page, maximum);
+        }
+        if(largest > page){
+            new Exception("ERROR: a " + largest + " pixel texture is larger than the largest texture the GPU supports").printStackTrace();
+            System.exit(402);
+        }
+        r.atlasW = page;
+        r.atlasH = page;
+
+        r.pages = new ArrayList<>();
+        int[] at = new int[2];
+        for(int i : PackOrder.byHeight(widths, heights)){
+            if(widths[i] == 0 || heights[i] == 0){
+                continue; // empty textures (like the glyph for a space) take up no room at all
+            }
+            r.page[i] = placeOnPage(r.pages, widths[i], heights[i], page, page, at);
+            r.x[i] = at[0];
+            r.y[i] = at[1];
+        }
+        r.layers = Math.max(r.pages.size(), 1);
+        if(r.layers > maximumLayers){
+            new Exception("ERROR: the atlas needs " + r.layers + " pages, which is more layers than the GPU supports").printStackTrace();
+            System.exit(402);
+        }
+    }
+
+    /** @return the percentage of a layout that the Textures in it cover */
+    private static long efficiency(Relayout r){
+        long area = 0;
+        for(Texture t : r.moved){
+            if(!t.isStreaming()){
+                area += (long)t.width() * t.height();
+            }
+        }
+        return 100 * area / ((long)r.atlasW * r.atlasH * r.layers);
+    }
+
+    /**
+     * Copies every Texture into a single ByteBuffer the size of the atlas (every layer of it), at the offset and layer
+     * it has been given
+     *
+     * @return A ByteBuffer that is the final packed TextureAtlas (which can then be passed on to the GPU)
+     * */
+    private ByteBuffer composeTextures(){
+        Relayout r = new Relayout();
+        r.moved = textures;
+        r.x = new int[textures.size()];
+        r.y = new int[textures.size()];
+        r.page = new int[textures.size()];
+        for(int i = 0; i < textures.size(); i++){
+            r.x[i] = textures.get(i).offsetX();
+            r.y[i] = textures.get(i).offsetY();
+            r.page[i] = textures.get(i).page();
+        }
+        r.atlasW = atlasW; // (a grown atlas has not told the Textures its size yet)
+        r.atlasH = atlasH;
+        r.layers = layers;
+        return composeTextures(r);
+    }
+
+    /**
+     * Copies each Texture of a layout (r.moved) into a single ByteBuffer the size of the layout, at the offset and layer
+     * the layout gives it, without asking the Textures where they are (a repack composes before it tells them)
+     *
+     * @return A ByteBuffer that is the final packed TextureAtlas (which can then be passed on to the GPU)
+     * */
+    private ByteBuffer composeTextures(Relayout r){
+        /* ------------------------ Make the Buffer to send off to the GPU -------------------------------------------*/
+        int pixel = bytesPerPixel();
+        ByteBuffer aBuffer = ByteBuffer.allocateDirect(pixel * r.atlasW * r.atlasH * r.layers);
+
+        // Textures never overlap in the atlas, so each one can be copied in on its own thread
+        // Every copy works through its own duplicates of the buffers, since buffer positions are not thread safe
+        getPool().parallelFor(r.moved.size(), (index) -> {
+
+            Texture t = r.moved.get(index);
+            if(t.isStreaming() || t.width() == 0 || t.height() == 0){
+                return;
+            }
+
+            int page = pixel * r.atlasW * r.atlasH * r.page[index]; // where the texture's page starts in aBuffer
+            int at = page + pixel * (r.x[index] + r.y[index] * r.atlasW);
+
+            // each row goes straight from the texture's buffer into aBuffer
+            // (in a single channel atlas the "null" texture is read a byte per pixel too, which is as white as ever)
+            if(premultiplied && t.hasAlpha() && pixel == 4){
+                Pixels.premultiply(t.getBuffer(), t.getIndex(0), 4 * t.width(), aBuffer, at, 4 * r.atlasW, t.width(), t.height());
+            } else {
+                Pixels.copyRows(t.getBuffer(), 0, pixel * t.width(), aBuffer, at, pixel * r.atlasW, pixel * t.width(), t.height());
+            }
+        });
+
+        aBuffer.position(aBuffer.capacity()); // every byte has been written (through the duplicates above)
+        aBuffer.flip();
+
+        /* -------------------- End Make the Buffer to send off to the GPU -------------------------------------------*/
+        return aBuffer;
+    }
+
     /**
      * Sends the ByteBuffer of the TextureAtlas off to the GPU
      * In the process, the GPU Texture creates its own mipmaps
+     * (unless the atlas is compressed, in which case the buffer holds every mipmap level, already compressed)
      * Uses the nearest pixel when drawing the texture larger
      * Uses linear interpolation between mipmaps and linear interpolation between pixels when drawing the texture smaller
      *
@@ -364,42 +1675,104 @@ public class TextureAtlas {
      *               @see TextureAtlas#packTextures()
      * @param width the number of pixels in a row of the ByteBuffer
      * @param height the number of pixels in a column of the ByteBuffer
+     * @param layers the number of pages in the ByteBuffer (1 unless the atlas is paged)
      * @param textureUnit One of the dedicated GL ints corresponding to a specific texture
      *                    GL13.GL_TEXTURE0
      *                    up to
      *                    GL13.GL_TEXTURE31
      *       WARNING: Graphics Cards only guarantee the first two textures, but many may support up to all 32
      * */
-    private int constructTextureFromBuffer(ByteBuffer buffer, int width, int height, int textureUnit) {
+    private int constructTextureFromBuffer(ByteBuffer buffer, int width, int height, int layers, int textureUnit) {
+        return constructTextureFromBuffer(buffer, width, height, layers, textureUnit, format);
+
+    }
+
+    /**
+     * Sends a ByteBuffer in the given BlockCompressor format (or 0 for uncompressed pixels) off to the GPU, as the
+     * atlas's own format may not be the one a repack was compressed to yet
+     * @see TextureAtlas#constructTextureFromBuffer(ByteBuffer, int, int, int, int)
+     * */
+    private int constructTextureFromBuffer(ByteBuffer buffer, int width, int height, int layers, int textureUnit, int format) {
+        int target = target();
+
         // Create a new texture object in memory and bind it
         int textureID = GL11.glGenTextures();
         GL13.glActiveTexture(textureUnit);
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glBindTexture(target, textureID);
 
         // All RGB- bytes are aligned to each other and each component is 1 byte
         GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
 
-        // Upload the texture data and create mip maps for scaling
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, width, height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buffer);
-        GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
+        if(format != 0){
+            // Upload every compressed mip level as it is
+            int internal = format == BlockCompressor.BC1 ? EXTTextureCompressionS3TC.GL_COMPRESSED_RGB_S3TC_DXT1_EXT : EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+            int levels = BlockCompressor.levels(width, height);
+            int offset = 0;
+            for(int level = 0, w = width, h = height; level < levels; level++, w = Math.max(1, w / 2), h = Math.max(1, h / 2)){
+                int size = (int)BlockCompressor.size(w, h, format) * layers;
+                ByteBuffer blocks = buffer.duplicate();
+                blocks.position(offset);
+                blocks.limit(offset + size);
+                if(target == GL30.GL_TEXTURE_2D_ARRAY){
+                    GL13.glCompressedTexImage3D(target, level, internal, w, h, layers, 0, blocks);
+                } else {
+                    GL13.glCompressedTexImage2D(target, level, internal, w, h, 0, blocks);
+                }
+                offset += size;
+            }
+            GL11.glTexParameteri(target, GL12.GL_TEXTURE_MAX_LEVEL, levels - 1);
+        } else {
+            // Upload the texture data and create mip maps for scaling
+            int internal = singleChannel ? GL30.GL_R8 : GL11.GL_RGBA;
+            if(target == GL30.GL_TEXTURE_2D_ARRAY){
+                GL12.glTexImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, internal, width, height, layers, 0, pixelFormat(), GL11.GL_UNSIGNED_BYTE, buffer);
+            } else {
+                GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, internal, width, height, 0, pixelFormat(), GL11.GL_UNSIGNED_BYTE, buffer);
+            }
+            GL30.glGenerateMipmap(target);
+        }
+
+        if(singleChannel){
+            // the coverage is in red alone, so the shaders see it as white with the coverage for alpha (premultiplied, the coverage everywhere)
+            int one = premultiplied ? GL11.GL_RED : GL11.GL_ONE;
+            GL11.glTexParameteriv(target, GL33.GL_TEXTURE_SWIZZLE_RGBA, new int[]{one, one, one, GL11.GL_RED});
+        }
 
         // Set the ST coordinate system
-        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
-        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+        GL11.glTexParameteri(target, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+        GL11.glTexParameteri(target, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
 
         // Define what to do when the texture has to be scaled
-        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
-        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_LINEAR);
+        GL11.glTexParameteri(target, GL11.GL_TEXTURE_MAG_FILTER, magFilter);
+        GL11.glTexParameteri(target, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_LINEAR);
 
         return textureID; // return the textureID
     }
 
+    /** @return the format of the pixels uploaded to the GPU texture: GL_RED for a single channel atlas and GL_RGBA if not */
+    private int pixelFormat(){
+        return singleChannel ? GL11.GL_RED : GL11.GL_RGBA;
+
+    }
+
     /**
-     * Deletes the existing GPU texture by calling the GL11.glDeleteTextures(int texture) method
+     * Deletes the existing GPU texture by calling the GL11.glDeleteTextures(int texture) method (along with any texture
+     * the atlas is switching from or to)
      * This does not destroy the TextureAtlas, but merely deallocates its memory in the GPU
      * */
-    public void destroy() {
+    public synchronized void destroy() {
         GL11.glDeleteTextures(handle); // tell the GPU to delete the texture of the textureAtlas
+        if(retired != 0){
+            GL11.glDeleteTextures(retired);
+            retired = 0;
+        }
+        if(relayout != null){
+            GL11.glDeleteTextures(relayout.handle);
+            relayout = null;
+        }
+        handle = 0;
+        repack = null; // whatever the ThreadPool finishes is never uploaded
+        abortCompaction();
     }
 
 
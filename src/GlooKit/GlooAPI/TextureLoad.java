@@ -0,0 +1,65 @@
+package GlooKit.GlooAPI;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TextureLoad is the progress of Textures being decoded in the background, so that a loading screen can be drawn
+ * while they come in rather than the application freezing. @see TextureAtlas#loadTexture(String)
+ *
+ * The Textures already have their handles (and their place in the atlas order) as soon as the load starts; only their
+ * pixels arrive later. Binding the atlas before the load is done is safe, but waits for the remaining Textures.
+ * */
+public class TextureLoad {
+
+    private final Worker pool;
+    private final int total;
+    private final AtomicInteger loaded = new AtomicInteger();
+    private Future<?> future;
+
+    TextureLoad(Worker pool, int total){
+        this.pool = pool;
+        this.total = total;
+    }
+
+    /** Hands over the task doing the decoding (set once, right after the task is started) */
+    void run(Future<?> future){
+        this.future = future;
+
+    }
+
+    /** Counts one more Texture as decoded (or as not needing to be) */
+    void count(){
+        loaded.incrementAndGet();
+
+    }
+
+    /** @return the number of Textures in this load */
+    public int total(){
+        return total;
+
+    }
+
+    /** @return the number of Textures decoded so far */
+    public int loaded(){
+        return Math.min(loaded.get(), total);
+
+    }
+
+    /** @return the fraction of the Textures decoded so far, from 0 to 1 */
+    public float progress(){
+        return total == 0 ? 1 : loaded() / (float)total;
+
+    }
+
+    public boolean isDone(){
+        return future.isDone();
+
+    }
+
+    /** Blocks until every Texture in this load has been decoded */
+    public void await(){
+        pool.await(future);
+
+    }
+}
@@ -0,0 +1,28 @@
+package GlooKit.GlooAPI;
+
+/**
+ * A TexturePacker decides where each Texture of a TextureAtlas goes in the atlas, and how big the atlas has to be.
+ * @see TextureAtlas#setPacker(TexturePacker)
+ *
+ * Packers only ever see the sizes of the textures, never their pixels, so they can be run (and compared against one
+ * another) without a GPU; see Driver.PackerBenchmark.
+ *
+ * Three packers come with GlooKit:
+ * @see ShelfPacker      the original TextureAtlas packer: rows of textures, with small textures stacked on larger ones
+ * @see SkylinePacker    keeps track of the top edge of everything packed so far and drops each texture as low as it goes
+ * @see MaxRectsPacker   keeps track of every free rectangle left in the atlas; slower, but usually the tightest
+ * */
+public interface TexturePacker {
+
+    /**
+     * Packs a set of rectangles into an atlas
+     *
+     * @param widths the width of each rectangle, in pixels
+     * @param heights the height of each rectangle, in pixels
+     * @param x filled in with the column of the upper left corner of each rectangle in the atlas
+     * @param y filled in with the row of the upper left corner of each rectangle in the atlas
+     * @return the width and height of the atlas, as {width, height}
+     * */
+    int[] pack(int[] widths, int[] heights, int[] x, int[] y);
+
+}
@@ -1,10 +1,15 @@
 package GlooKit.GlooAPI;
 
+import GlooKit.GlooAPI.DrawingObjects.DrawingObject;
 
 /**
  * The abstract Vertex class represents a vertex type of object that can be implemented.
  *
- * A Vertex, at its core, is merely an array of floats
+ * A Vertex, at its core, is merely a run of floats
+ *
+ * A freshly constructed Vertex keeps its floats in a small array of its own. Once it joins a DrawingObject, its floats
+ * move into the VertexArena of the object's GlooBatch, and the Vertex becomes a view onto its slot there.
+ * @see VertexArena
  *
  * see "Game.Batches.UserVertex"
  * for an example of implementation
@@ -16,7 +21,12 @@ package GlooKit.GlooAPI;
 public abstract class Vertex {
 
 
-    private final float[] attributes;
+    // where the attributes live: attribute i is data[offset + i]
+    private float[] data;
+    private int offset;
+    private final int length;
+    // the DrawingObject this vertex belongs to, which is told whenever an attribute actually changes
+    private DrawingObject owner;
 
     public static final Integer SIZE = null;
     // standard coordinates
@@ -31,6 +41,8 @@ public abstract class Vertex {
     // texture coordinates
     public Integer S(){return null;}
     public Integer T(){return null;}
+    // the page of a paged TextureAtlas the texture coordinates are on
+    public Integer L(){return null;}
     // bill-boarding texture coordinates for particles
     public Integer U(){return null;}
     public Integer V(){return null;}
@@ -38,15 +50,17 @@ public abstract class Vertex {
     public Integer P(){return null;}
     public Integer Q(){return null;}
 
-    public float[] attributes() {
-        return attributes;
+    /** @return the number of floats in this vertex */
+    public int length(){
+        return length;
 
     }
 
     /** Basic Constructor*/
     public Vertex(int length){
-        attributes = new float[length];
-
+        this.data = new float[length];
+        this.offset = 0;
+        this.length = length;
     }
 
     /** Default toString operator for a vertex that simply prints out the attributes as an n-tuple*/
@@ -55,11 +69,11 @@ public abstract class Vertex {
         String string = "<";
 
         // for each attribute but the last, round to 3 decimals
-        for (int i = 0; i < attributes.length - 1; i++) {
-            string += ((int) attributes[i] * 100)/100 + ", ";
+        for (int i = 0; i < length - 1; i++) {
+            string += ((int) get(i) * 100)/100 + ", ";
         }
 
-        string += ((int) attributes[attributes.length - 1] * 100)/100 + ">";
+        string += ((int) get(length - 1) * 100)/100 + ">";
 
         return string;
 
@@ -67,15 +81,48 @@ public abstract class Vertex {
 
 //    public abstract Vertex setXYZ(double X, double Y, double Z);
 
+    /**
+     * Hands this vertex to the DrawingObject it makes up part of, so that the object can be marked dirty whenever one
+     * of its vertices really changes. This is called by DrawingObject#newVertex()
+     * */
+    public final void setOwner(DrawingObject owner){
+        this.owner = owner;
+
+    }
+
+    /**
+     * Moves this vertex's floats to a new home (a slot in a VertexArena Block), carrying the current values along.
+     * This is called by DrawingObject whenever its vertices move to a new Block
+     *
+     * @param data the array the floats now live in
+     * @param offset the index in data of the first float of this vertex
+     * @param copy whether the current values need to be copied over (false if they already have been)
+     * */
+    public final void moveTo(float[] data, int offset, boolean copy){
+        if(copy){
+            System.arraycopy(this.data, this.offset, data, offset, length);
+        }
+        this.data = data;
+        this.offset = offset;
+    }
+
+    /**
+     * Sets an attribute of the vertex. Setting an attribute to the value it already holds is not a change, and will
+     * not cause the owning DrawingObject to be re-uploaded by a retained GlooBatch
+     * @see GlooBatch#setRetained(boolean)
+     * */
     public Vertex set(Integer attribute, float value){
-        if(attribute != null){
-            attributes[attribute] = value;
+        if(attribute != null && data[offset + attribute] != value){
+            data[offset + attribute] = value;
+            if(owner != null){
+                owner.markDirty();
+            }
         }
         return this;
     }
 
     public float get(int attribute){
-        return attributes[attribute];
+        return data[offset + attribute];
 
     }
 
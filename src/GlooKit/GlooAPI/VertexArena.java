@@ -0,0 +1,178 @@
+package GlooKit.GlooAPI;
+
+import GlooKit.GlooAPI.DrawingObjects.DrawingObject;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A VertexArena is where the vertices of every DrawingObject of a GlooBatch actually live.
+ * @see GlooBatch#getArena()
+ *
+ * Rather than each Vertex owning its own little float[], the arena hands out Blocks: contiguous runs of floats inside
+ * large shared pages. A DrawingObject keeps all of its vertices back to back in one Block, and each Vertex is just a
+ * view onto its slot of that Block. Packing a DrawingObject into an upload buffer is then a single bulk copy.
+ *
+ * Blocks come in power of two sizes (measured in vertices). A DrawingObject that outgrows its Block moves into one
+ * twice the size, which keeps objects that are built up a vertex at a time (like Polygons) from moving very often.
+ * Pages are never reallocated or compacted, so a Block never moves out from under a Vertex that is writing into it.
+ *
+ * Blocks are recycled by size. A Block is given back either when its DrawingObject moves to a bigger one, or when the
+ * DrawingObject is garbage collected (the arena keeps a weak reference to each owner for exactly this purpose).
+ * */
+public final class VertexArena {
+
+    /** The number of floats in a standard page (a single larger Block gets a page all of its own) */
+    private static final int PAGE_FLOATS = 1 << 16;
+
+    private final int stride;
+
+    private final List<float[]> pages;
+    private int top; // the first unused float of the newest page
+
+    // recycled Blocks, indexed by the log2 of their capacity in vertices
+    private final List<List<Block>> free;
+
+    // weak references to every owner with a live Block, so the Blocks of collected objects can be reused
+    private final ReferenceQueue<DrawingObject> collected;
+    private final Set<Claim> claims;
+
+    /**
+     * @param stride the number of floats in a single vertex of the owning GlooBatch
+     * */
+    VertexArena(int stride){
+        this.stride = stride;
+        this.pages = new ArrayList<>();
+        this.pages.add(new float[PAGE_FLOATS]);
+        this.top = 0;
+        this.free = new ArrayList<>();
+        this.collected = new ReferenceQueue<>();
+        this.claims = new HashSet<>();
+    }
+
+    public int stride(){
+        return stride;
+
+    }
+
+    /**
+     * Hands out a Block with room for at least the given number of vertices
+     *
+     * @param vertices the number of vertices the Block must hold
+     * @param owner the DrawingObject the Block is for (the Block is reclaimed once the owner is collected)
+     * */
+    public synchronized Block allocate(int vertices, DrawingObject owner){
+        reclaim();
+
+        int sizeClass = 0;
+        while((1 << sizeClass) < vertices){
+            sizeClass += 1;
+        }
+        int capacity = 1 << sizeClass;
+
+        Block block;
+        if(sizeClass < free.size() && !free.get(sizeClass).isEmpty()){
+            List<Block> recycled = free.get(sizeClass);
+            block = recycled.remove(recycled.size() - 1);
+        } else {
+            int floats = capacity * stride;
+            if(floats > PAGE_FLOATS){
+                block = new Block(new float[floats], 0, capacity); // this one gets a page to itself
+            } else {
+                if(top + floats > PAGE_FLOATS){
+                    pages.add(new float[PAGE_FLOATS]);
+                    top = 0;
+                }
+                block = new Block(pages.get(pages.size() - 1), top, capacity);
+                top += floats;
+            }
+        }
+
+        Claim claim = new Claim(owner, block, collected);
+        claims.add(claim);
+        block.claim = claim;
+        return block;
+    }
+
+    /**
+     * Gives a Block back to the arena so that it can be handed out again
+     * The Block must not be written to after this
+     * */
+    public synchronized void release(Block block){
+        if(block.claim != null){
+            claims.remove(block.claim);
+            block.claim.clear();
+            block.claim = null;
+        }
+        recycle(block);
+    }
+
+    ////////////////////////////////////
+    ////////////////////////////////////
+
+    /** Recycles the Blocks of any owners that have been garbage collected since the last allocation */
+    private void reclaim(){
+        Claim claim;
+        while((claim = (Claim)collected.poll()) != null){
+            if(claims.remove(claim)){
+                claim.block.claim = null;
+                recycle(claim.block);
+            }
+        }
+    }
+
+    private void recycle(Block block){
+        int sizeClass = Integer.numberOfTrailingZeros(block.capacity);
+        while(free.size() <= sizeClass){
+            free.add(new ArrayList<>());
+        }
+        free.get(sizeClass).add(block);
+    }
+
+    /**
+     * A Block is a contiguous run of vertices inside one of the arena's pages
+     * Vertex i of the Block starts at data()[offset() + i * stride]
+     * */
+    public static final class Block {
+
+        private final float[] data;
+        private final int offset;
+        private final int capacity;
+        private Claim claim;
+
+        private Block(float[] data, int offset, int capacity){
+            this.data = data;
+            this.offset = offset;
+            this.capacity = capacity;
+        }
+
+        public float[] data(){
+            return data;
+
+        }
+        public int offset(){
+            return offset;
+
+        }
+        /** @return the number of vertices this Block can hold */
+        public int capacity(){
+            return capacity;
+
+        }
+    }
+
+    /** A weak reference from a Block to its owner, enqueued once the owner has been collected */
+    private static final class Claim extends WeakReference<DrawingObject> {
+
+        private final Block block;
+
+        Claim(DrawingObject owner, Block block, ReferenceQueue<DrawingObject> queue){
+            super(owner, queue);
+            this.block = block;
+        }
+    }
+}
@@ -1,20 +1,47 @@
 package GlooKit.GlooAPI;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
 
+/**
+ * A Worker is a pool of threads that Runnable tasks can be handed to. Its hidden Worker threads share their work by
+ * stealing it from one another.
+ *
+ * Each hidden Worker has a deque of its own. Tasks handed to the pool in bulk are dealt out across those deques, so
+ * submitting a batch of tasks touches no shared queue and no shared lock. A hidden Worker runs the newest task in its
+ * own deque first, and when that runs dry it steals the oldest task from someone else's. A Worker with nothing to do
+ * spins for a little while (new work usually shows up within the same frame) before parking, and is unparked by the
+ * next submission.
+ *
+ * For fanning a frame's work out and waiting on all of it, prefer parallelFor (or invokeAll) over task and await:
+ * the whole range is published at once, and the calling thread works through it alongside the pool instead of sitting
+ * idle until the pool is done.
+ * @see Worker#parallelFor(int, IntConsumer)
+ */
 public class Worker {
 
+    /** The number of times an idle Worker looks for work again before parking */
+    private static final int SPINS = 64;
+    /** The number of times an awaiting thread checks its task again before parking */
+    private static final int AWAIT_SPINS = 256;
+
     /**A flag used to permanently halt all the Worker threads associated with this thread.*/
-    private boolean halt;
-    /**A flag used to check whether a thread currently has any available work.*/
-    private boolean idle;
+    private volatile boolean halt;
+    /**A flag used to check whether a thread is currently parked, waiting for work.*/
+    private volatile boolean idle;
 
     /**A reference to a collection of all the Worker threads associated with this one.*/
     private final Worker[] workers;
-    /**A reference to the queue utilized by this Worker pool / thread*/
-    private final Queue<FutureTask<Object>> queue;
+    /**The deque of tasks owned by this hidden Worker (null for the pool itself)*/
+    private final Deque<Runnable> deque;
+    /**The thread of this hidden Worker (null for the pool itself)*/
+    private final Thread thread;
+    /**The hidden Worker that the next bulk submission starts dealing tasks to (only a hint, so not synchronized)*/
+    private int next;
 
     /**
      * A public default constructor which creates a worker pool with a number of threads appropriate for the runtime environment.
@@ -29,10 +56,14 @@ public class Worker {
      * @param count indicates the number of threads the worker pool will possess.
      */
     public Worker(int count){
-        queue = new LinkedList<>();
+        deque = null;
+        thread = null;
         workers = new Worker[count];
         for(int i = 0; i < count; i++){
-            workers[i] = new Worker(queue, workers);
+            workers[i] = new Worker(workers, i);
+        }
+        for(Worker w : workers){
+            w.thread.start(); // only once every deque exists, since a running Worker may try to steal from any of them
         }
         halt = false;
     }
@@ -41,102 +72,174 @@ public class Worker {
     ////////////////////////////////////
 
     /**
-     * A private constructor used in order to create worker pools. Worker pools all reference the same queue and
-     * worker list, necessitating this constructor. All Workers created with this constructor may not be referenced
+     * A private constructor used in order to create worker pools. Worker pools all reference the same worker list,
+     * necessitating this constructor. All Workers created with this constructor may not be referenced
      * outside of this file.
-     * @param queue represents the queue utilized by this hidden worker.
-     * @param workers represents a collection of all Workers utilizing the same queue as this one.
+     * @param workers represents a collection of all Workers in the same pool as this one.
+     * @param index is the position of this Worker in that collection.
      */
-    private Worker(Queue<FutureTask<Object>> queue, Worker[] workers){
-        this.queue = queue;
+    private Worker(Worker[] workers, int index){
         this.workers = workers;
+        this.deque = new ConcurrentLinkedDeque<>();
         this.halt = false;
-        new Thread(()->{
+        this.thread = new Thread(()->{
             try{
+                int spins = 0;
                 while(!halt){
-                    Runnable T = dequeue();
+                    Runnable T = find(index);
                     if(T != null){
                         T.run();
+                        spins = 0;
+                    } else if(spins < SPINS){
+                        spins += 1;
+                        Thread.yield();
                     } else {
                         idle = true;
-                        synchronized(this){this.wait();}
+                        if(!halt && (T = find(index)) == null){ // look once more, in case work came in as we went idle
+                            LockSupport.park(this);
+                        }
+                        idle = false;
+                        if(T != null){
+                            T.run();
+                        }
+                        spins = 0;
                     }
                 }
             } catch(Exception e){
                 e.printStackTrace();
                 System.exit(-400);
             }
-        }).start();
+        });
     }
 
     ////////////////////////////////////
     ////////////////////////////////////
 
     /**
-     * A private call which securely queues Runnable tasks into this Worker's operating queue.
-     * @param task is a Runnable, which will be taken up by one of the Worker threads associated with this
-     * Worker's queue.
-     * @return Returns the FutureTask of the task submitted to the queue. This information is important to capture
-     * so that tasks can later be waited upon and/or confirmed to have been executed.
+     * Finds the next task for a hidden Worker: the newest task of its own deque, or failing that, the oldest task of
+     * any other Worker's deque.
+     * @param index is the position of the hidden Worker looking for work.
+     * @return Returns the task to run, or null if there is no work anywhere in the pool.
      */
-    // TODO batch enqueuing multiple tasks!!!
-    private FutureTask<Object> enqueue(Runnable task){
-        FutureTask<Object> F = new FutureTask<>(task, null);
-        synchronized(queue){
-            queue.offer(F);
-            if(queue.size() == 1){
-                for(Worker w : workers){
-                    if(w.idle){
-                        synchronized(w){
-                            w.notify();
-                            w.idle = false;
-                        }
-                    }
-                }
-            }
+    private Runnable find(int index){
+        Runnable T = workers[index].deque.pollFirst();
+        for(int i = 1; T == null && i < workers.length; i++){
+            T = workers[(index + i) % workers.length].deque.pollLast();
         }
-        return F;
+        return T;
     }
 
     /**
-     * Safely removes a task from the queue, so that this thread may execute that task.
-     * @return Returns the FutureTask of the retrieved task. This information is important to capture
-     * so that tasks can later be waited upon and/or confirmed to have been executed.
+     * Unparks up to count idle Workers so that newly submitted tasks get picked up.
+     * @param count is the number of tasks that were just submitted.
      */
-    private FutureTask<Object> dequeue(){
-        synchronized(queue){
-            return queue.poll();
+    private void wake(int count){
+        for(int i = 0; i < workers.length && count > 0; i++){
+            Worker w = workers[i];
+            if(w.idle){
+                w.idle = false;
+                LockSupport.unpark(w.thread);
+                count -= 1;
+            }
         }
     }
 
+    /** @return Returns the hidden Worker running on the calling thread, or null if the caller is not one of ours. */
+    private Worker current(){
+        Thread caller = Thread.currentThread();
+        for(Worker w : workers){
+            if(w.thread == caller){
+                return w;
+            }
+        }
+        return null;
+    }
+
     /**
      * One of the primary utility functions of a Worker pool, this method handles the enqueuing
      * of tasks and returns the futures necessary for managing those tasks over time.
+     *
+     * Tasks submitted from outside the pool are dealt out across the Workers' deques; tasks submitted by one of the
+     * pool's own Workers go onto its own deque, where idle Workers will steal them.
      * @param tasks is a collection of tasks to be enqueued.
-     * @return The FutureTask representations of the given tasks (in order to handle asynchronisity, probably through the use of the await methods).
+     * @return The Future representations of the given tasks (in order to handle asynchronisity, probably through the use of the await methods).
      */
     public Future[] task(Runnable[] tasks){
-        Future[] F = new Future[tasks.length];
-        for(int i =0; i < tasks.length; i++){
-            F[i] = enqueue(tasks[i]);
+        Task[] F = new Task[tasks.length];
+        for(int i = 0; i < tasks.length; i++){
+            F[i] = new Task(tasks[i]);
         }
+        submit(F, F.length);
         return F;
     }
 
+    /**
+     * Deals the first count of the given Runnables out across the Workers' deques (or onto the caller's own deque, if
+     * the caller is one of the pool's Workers) and wakes enough idle Workers to take them.
+     */
+    private void submit(Runnable[] tasks, int count){
+        Worker self = current();
+        int start = next;
+        for(int i = 0; i < count; i++){
+            Worker w = self != null ? self : workers[(start + i) % workers.length];
+            w.deque.offerFirst(tasks[i]);
+        }
+        next = (start + count) % workers.length;
+        wake(count);
+    }
+
+    /**
+     * Runs body for every index from 0 to n - 1, spread over the pool, and returns once all of them have finished.
+     *
+     * The range is published to the pool as a single shared counter, which idle Workers (and the calling thread
+     * itself) claim indices from one at a time. Since the caller helps rather than blocking, calling this from inside
+     * a task that is itself running on the pool is safe. Each index should be a reasonably sized chunk of work (a
+     * slice of a batch, a texture, a glyph) rather than a single pixel.
+     *
+     * As with await, a failure in body is printed rather than thrown; the remaining indices still run.
+     * @param n is the number of indices to run.
+     * @param body is the work to do for a single index.
+     */
+    public void parallelFor(int n, IntConsumer body){
+        if(n <= 0){
+            return;
+        }
+        Range range = new Range(n, body);
+        int helpers = Math.min(n - 1, workers.length); // the caller takes at least one index itself
+        if(helpers > 0){
+            Runnable[] copies = new Runnable[helpers];
+            Arrays.fill(copies, range); // every copy runs the same shared range
+            submit(copies, helpers);
+        }
+        range.run();
+        range.await();
+    }
+
+    /**
+     * Runs every one of the given tasks, spread over the pool and the calling thread, and returns once all of them
+     * have finished.
+     * @see Worker#parallelFor(int, IntConsumer)
+     * @param tasks is a collection of tasks to be run.
+     */
+    public void invokeAll(Runnable[] tasks){
+        parallelFor(tasks.length, i -> tasks[i].run());
+
+    }
+
     /**
      * One of the primary utility functions of a Worker pool, this method handles the enqueuing
      * of tasks and returns the futures necessary for managing those tasks over time.
      * @param task is a single task to be enqueued.
-     * @return The FutureTask representations of the given task (in order to handle asynchronisity, probably through the use of the await methods).
+     * @return The Future representation of the given task (in order to handle asynchronisity, probably through the use of the await methods).
      */
     public Future task(Runnable task){
-        return enqueue(task);
+        return task(new Runnable[]{task})[0];
 
     }
 
     /**
      * One of the primary utility functions of a Worker pool, this method blocks the thread it is called in until the completion
-     * of the given future tasks. While waiting, the thread is in a true wait and yields its cpu time to other tasks.
+     * of the given future tasks. The thread spins briefly (most tasks are short) and then parks, yielding its cpu time to other tasks.
      * @param future is the task to be awaited.
      * */
     public void await(Future future){
@@ -149,7 +252,7 @@ public class Worker {
 
     /**
      * One of the primary utility functions of a Worker pool, this method blocks the thread it is called in until the completion
-     * of the given future tasks. While waiting, the thread is in a true wait and yields its cpu time to other tasks.
+     * of the given future tasks. The thread spins briefly (most tasks are short) and then parks, yielding its cpu time to other tasks.
      * @param futures is the group of tasks to be awaited.
      * */
     public void await(Future[] futures){
@@ -164,15 +267,163 @@ public class Worker {
     }
 
     public void destroy(){
+        halt = true;
         for(Worker w : workers){
             w.halt = true;
-            synchronized(w){
-                w.notify();
-                w.idle = false;
+            LockSupport.unpark(w.thread);
+        }
+    }
+
+    ////////////////////////////////////
+    ////////////////////////////////////
+
+    /**
+     * A Range is a parallelFor in flight. Running it claims indices from the shared counter until there are none left,
+     * so it can be handed to any number of Workers at once; whichever finishes the last index wakes the caller.
+     */
+    private static final class Range implements Runnable {
+
+        private final int n;
+        private final IntConsumer body;
+        private final AtomicInteger claimed;
+        private final AtomicInteger remaining;
+        private volatile Thread waiter;
+        private volatile Throwable failure;
+
+        Range(int n, IntConsumer body){
+            this.n = n;
+            this.body = body;
+            this.claimed = new AtomicInteger(0);
+            this.remaining = new AtomicInteger(n);
+        }
+
+        @Override
+        public void run(){
+            int i;
+            while((i = claimed.getAndIncrement()) < n){
+                try{
+                    body.accept(i);
+                } catch(Throwable t){
+                    failure = t;
+                }
+                if(remaining.decrementAndGet() == 0){
+                    Thread w = waiter;
+                    if(w != null){
+                        LockSupport.unpark(w);
+                    }
+                }
+            }
+        }
+
+        /** Blocks until every index has finished (the caller has already run out of indices to claim itself) */
+        void await(){
+            for(int i = 0; remaining.get() > 0 && i < AWAIT_SPINS; i++){
+                Thread.yield();
+            }
+            if(remaining.get() > 0){
+                waiter = Thread.currentThread();
+                while(remaining.get() > 0){
+                    LockSupport.parkNanos(this, 1000000);
+                }
+                waiter = null;
+            }
+            if(failure != null){
+                failure.printStackTrace();
             }
         }
-        halt = true;
     }
 
-}
+    /**
+     * A Task is a submitted Runnable along with the Future used to wait on it. It is lighter than a FutureTask: it is
+     * only ever run once (whichever Worker takes it from a deque owns it), and it cannot be cancelled.
+     */
+    private static final class Task implements Runnable, Future<Object> {
+
+        private final Runnable runnable;
+        private volatile boolean done;
+        private volatile Thread waiter; // the thread parked on this task, if any
+        private Throwable failure;
+
+        Task(Runnable runnable){
+            this.runnable = runnable;
+
+        }
+
+        @Override
+        public void run(){
+            try{
+                runnable.run();
+            } catch(Throwable t){
+                failure = t;
+            }
+            done = true;
+            Thread w = waiter;
+            if(w != null){
+                LockSupport.unpark(w);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning){
+            return false;
 
+        }
+
+        @Override
+        public boolean isCancelled(){
+            return false;
+
+        }
+
+        @Override
+        public boolean isDone(){
+            return done;
+
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException{
+            for(int i = 0; !done && i < AWAIT_SPINS; i++){
+                Thread.yield();
+            }
+            if(!done){
+                waiter = Thread.currentThread();
+                while(!done){
+                    LockSupport.parkNanos(this, 1000000); // the timeout covers a second thread awaiting the same task
+                    if(Thread.interrupted()){
+                        throw new InterruptedException();
+                    }
+                }
+                waiter = null;
+            }
+            return result();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException{
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            waiter = Thread.currentThread();
+            while(!done){
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0){
+                    waiter = null;
+                    throw new TimeoutException();
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, 1000000));
+                if(Thread.interrupted()){
+                    throw new InterruptedException();
+                }
+            }
+            waiter = null;
+            return result();
+        }
+
+        private Object result() throws ExecutionException{
+            if(failure != null){
+                throw new ExecutionException(failure);
+            }
+            return null;
+        }
+    }
+
+}
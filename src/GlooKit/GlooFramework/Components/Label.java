@@ -10,7 +10,7 @@ import GlooKit.GlooFramework.TextBatch;
 import GlooKit.Utils.Vector;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.List;
 
 import static GlooKit.GlooAPI.GlooCore.TEXT;
 import static GlooKit.GlooAPI.GlooFontFamily.GLOOFONT_PLAIN;
@@ -49,9 +49,10 @@ public class Label implements Drawable{
     private TextBatch batch;
 
     private float[] validator;
+    private int atlasGeneration; // the glyph coordinates in the quads are only good while the atlas keeps this generation
 
 
-    private LinkedList<Character> text;
+    private List<Integer> text; // the code points of the text (a character past the Basic Multilingual Plane is one, not a surrogate pair)
     private ArrayList<Quad> quads;
 
     public Label(GlooApplication app, String font, String text){
@@ -59,10 +60,8 @@ public class Label implements Drawable{
         this.batch = (TextBatch)app.getBatch(TEXT);
         this.quads = new ArrayList<>();
         this.font = batch.getFontFamily(font);
-        this.text = new LinkedList<>();
-        for(int i = 0; i < text.length(); i++){
-            this.text.add(text.charAt(i));
-        }
+        this.text = new ArrayList<>();
+        text.codePoints().forEach(this.text::add);
         this.validator = new float[4];
 
         this.pointSize = 24;
@@ -75,7 +74,9 @@ public class Label implements Drawable{
         format(X, Y, W, H, Z);
 
         formatted = (X==validator[0]) && (Y==validator[1])
-                 && (W==validator[2]) && (H==validator[3]);
+                 && (W==validator[2]) && (H==validator[3])
+                 && atlasGeneration == batch.getAtlasGeneration();
+        atlasGeneration = batch.getAtlasGeneration();
         validator[0] = X;
         validator[1] = Y;
         validator[2] = W;
@@ -95,12 +96,13 @@ public class Label implements Drawable{
             formatted = true;
             int i = 0; // injected index iterator
             Vector offset = new Vector(app.getSpacing(), H - app.getSpacing() - font.getCharHeight(pointSize), 0);
-            for(Character c : text){
+            for(int codePoint : text){
                 if(quads.size() == i){quads.add(null);}
                 if(quads.get(i) == null){quads.set(i, new Quad(app, TEXT));}
 
                 Quad quad = quads.get(i);
-                GlooCharacter character = font.getCharacter(fontStyle, c);
+                GlooCharacter character = font.getCharacter(fontStyle, codePoint);
+                float alpha = character.isReady() ? 1 : 0; // a glyph rasterized just now is hidden until it lands (the generation changes then)
                 quad.exhume(X + offset.x() + character.x(pointSize)
                            ,Y + offset.y() + character.y(pointSize)
                            ,character.w(pointSize)
@@ -113,10 +115,11 @@ public class Label implements Drawable{
                 quad.apply(3, (Vertex v) -> {v.set(v.S(), character.u()); v.set(v.T(), character.v());});
 
                 quad.apply((Vertex v) -> {
+                    v.set(v.L(), character.layer());
                     v.set(v.R(), 1);
                     v.set(v.G(), 1);
                     v.set(v.B(), 1);
-                    v.set(v.A(), 1);
+                    v.set(v.A(), alpha);
                 });
 
                 offset = new Vector(offset.x() + character.advance(pointSize), offset.y(), 0);
@@ -27,7 +27,6 @@ public class Rect implements Drawable{
     }
 
     public Rect(Texture texture, int batchHandle){
-        // TODO should textures be made to know if they contain any transparency?
         this(texture.app, batchHandle);
         this.texture = texture;
     }
@@ -43,30 +42,36 @@ public class Rect implements Drawable{
     public void draw(float X, float Y, float W, float H, float Z) {
 
         quad.exhume(X, Y, W, H, Z);
+        texture.use(); // keeps the texture from being evicted (and brings it back if it was)
+        quad.setOpaque(a == 1 && texture.isOpaque());
 
         Vertex v;
 
         v = quad.vertex(0);
         v.set(v.S(), texture.S());
         v.set(v.T(), texture.V());
+        v.set(v.L(), texture.layer());
         v.set(v.R(), r).set(v.G(), g);
         v.set(v.B(), b).set(v.A(), a);
 
         v = quad.vertex(1);
         v.set(v.S(), texture.S());
         v.set(v.T(), texture.T());
+        v.set(v.L(), texture.layer());
         v.set(v.R(), r).set(v.G(), g);
         v.set(v.B(), b).set(v.A(), a);
 
         v = quad.vertex(2);
         v.set(v.S(), texture.U());
         v.set(v.T(), texture.T());
+        v.set(v.L(), texture.layer());
         v.set(v.R(), r).set(v.G(), g);
         v.set(v.B(), b).set(v.A(), a);
 
         v = quad.vertex(3);
         v.set(v.S(), texture.U());
         v.set(v.T(), texture.V());
+        v.set(v.L(), texture.layer());
         v.set(v.R(), r).set(v.G(), g);
         v.set(v.B(), b).set(v.A(), a);
 
@@ -13,8 +13,9 @@ public class DefaultBatch extends GlooBatch {
         super(app, 1.00f, true, null);
 
         describeShaders("src/GlooKit/GlooShaders/", "quadVertex.glsl", "quadFragment.glsl", null);
-        describeVertices(new int[] {2, 4, 2}, "in_Position", "in_Color", "in_TextureCoord");
+        describeVertices(new int[] {2, 4, 3}, "in_Position", "in_Color", "in_TextureCoord"); // S, T and the page
         projMatrixLocation = describeUniform("projectionMatrix");
+        setOpaquePass(true); // opaque sprites are drawn unblended, front to back, ahead of the translucent ones
         
     }
 
@@ -28,9 +29,8 @@ public class DefaultBatch extends GlooBatch {
 //        GL11.glDisable(GL13.GL_MULTISAMPLE);
         // enable depth testing
         GL11.glEnable(GL11.GL_DEPTH_TEST);
-        // tell the shader to enable blending
-        GL11.glEnable(GL11.GL_BLEND);
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        // tell the shader to enable blending (to suit the atlas, which may be premultiplied)
+        enableBlending();
         // send the projection matrix
         assignUniform(FLOAT_MAT4x4, projMatrixLocation, panel.toFloatBuffer());
 
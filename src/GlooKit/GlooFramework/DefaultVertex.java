@@ -6,7 +6,7 @@ import GlooKit.GlooAPI.Vertex;
 public class DefaultVertex extends Vertex {
 
     /* Attributes */
-    public static final Integer SIZE = 8;
+    public static final Integer SIZE = 9;
     // location
     public Integer X(){return 0;}
     public Integer Y(){return 1;}
@@ -18,6 +18,7 @@ public class DefaultVertex extends Vertex {
     // texture
     public Integer S(){return 6;}
     public Integer T(){return 7;}
+    public Integer L(){return 8;}
 
 //    public Vertex create(){
 //        return new DefaultVertex();
@@ -25,20 +26,20 @@ public class DefaultVertex extends Vertex {
 //    }
 
     public DefaultVertex() {
-        super(8);
+        super(9);
 
-        float[] attributes = attributes();
         // default to origin
-        attributes[X()] = 0;
-        attributes[Y()] = 0;
+        set(X(), 0);
+        set(Y(), 0);
         // default to white (full opacity)
-        attributes[R()] = 1;
-        attributes[G()] = 1;
-        attributes[B()] = 1;
-        attributes[A()] = 1;
+        set(R(), 1);
+        set(G(), 1);
+        set(B(), 1);
+        set(A(), 1);
         // default to origin
-        attributes[S()] = 0;
-        attributes[T()] = 0;
+        set(S(), 0);
+        set(T(), 0);
+        set(L(), 0);
     }
 
 }
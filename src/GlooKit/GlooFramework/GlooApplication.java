@@ -109,6 +109,9 @@ public class GlooApplication extends KitBit {
     /** Number of frames that have occurred in the last second */
     private long fps = 0;
 
+    /** Whether the game loop prepares the next frame while the current one is drawn (see {@link #setPipelined(boolean)}) */
+    private boolean pipelined = false;
+
 
     // glooKit Hardware
     /** The {@code GlooCore} for this application that handles all render calls */
@@ -456,6 +459,9 @@ public class GlooApplication extends KitBit {
      *     between frames</li>
      *     <li>{@code glfwSwapBuffers(long)}, which actually draws the rendered frame to the screen</li>
      * </ol>
+     * When the application is {@link #setPipelined(boolean) pipelined}, the next frame is laid out, packed, calculated
+     * and stepped on a worker thread while the rendering thread draws and swaps the previous one.
+     * <p>
      * The game loop also keeps track of fps. If the amount of time it takes a frame to handle these methods in less than
      * the number of nanoseconds in {@code FRAME_LENGTH}, then the thread sleeps for the remainder of time to ensure that
      * there is a maximum fps. No such assurance can be given on minimum fps.
@@ -464,6 +470,9 @@ public class GlooApplication extends KitBit {
         // keep looping round til the application is complete
         Worker pool = new Worker(1);
         Future update;
+        Future<?> prepared = null; // the frame being prepared, when pipelined
+        int preparedW = 0;
+        int preparedH = 0;
         float work = 0;
 
         try{
@@ -476,18 +485,51 @@ public class GlooApplication extends KitBit {
                     fps = 0;
                     work = 0;
                 }
-                drawFrame();
-                long clockTimer = System.nanoTime();
-                double delta = (clockTimer - lastStep) / 1000000000.0;
-                lastStep = clockTimer;
-
-                input.update();
-                update = pool.task(()->{
-                    calcFrame(delta);
-                    stepFrame(delta);
-                });
-                glfwSwapBuffers(window);
-                pool.await(update);
+                if(pipelined){
+                    // wait for the frame that was prepared during the last loop, and hand it over to the GlooCore
+                    boolean ready = prepared != null;
+                    if(ready){
+                        pool.await(prepared);
+                        core.flipFrame();
+                    }
+                    int drawW = preparedW;
+                    int drawH = preparedH;
+
+                    glfwGetFramebufferSize(window, w, h);
+                    int W = w[0];
+                    int H = h[0];
+                    long clockTimer = System.nanoTime();
+                    double delta = (clockTimer - lastStep) / 1000000000.0;
+                    lastStep = clockTimer;
+
+                    input.update();
+                    // prepare the next frame while this one is drawn
+                    prepared = pool.task(()->{
+                        calcFrame(delta);
+                        stepFrame(delta);
+                        room.drawFrame(0, 0, W, H, 0);
+                        core.prepareFrame();
+                    });
+                    preparedW = W;
+                    preparedH = H;
+                    if(ready){
+                        core.submitFrame(drawW, drawH);
+                        glfwSwapBuffers(window); // the first loop has nothing to draw, so there is nothing to show either
+                    }
+                } else {
+                    drawFrame();
+                    long clockTimer = System.nanoTime();
+                    double delta = (clockTimer - lastStep) / 1000000000.0;
+                    lastStep = clockTimer;
+
+                    input.update();
+                    update = pool.task(()->{
+                        calcFrame(delta);
+                        stepFrame(delta);
+                    });
+                    glfwSwapBuffers(window);
+                    pool.await(update);
+                }
 
                 fps += 1;
                 long remainder = frameTimer + FRAME_LENGTH - System.nanoTime();
@@ -510,6 +552,9 @@ public class GlooApplication extends KitBit {
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
+            if(prepared != null){
+                pool.await(prepared); // let the frame being prepared finish before everything is torn down
+            }
             // Free the window callbacks and destroy the window
             glfwFreeCallbacks(window);
             glfwDestroyWindow(window);
@@ -519,6 +564,32 @@ public class GlooApplication extends KitBit {
         }
     }
 
+    /**
+     * Sets whether the game loop is pipelined. This must be set before {@link #run() run()} is called.
+     * <p>
+     * A normal game loop does its work one step after another: it lays out and packs a frame, draws it, and then
+     * updates the application while the frame is swapped to the screen. A pipelined game loop instead lays out and
+     * packs the next frame (along with {@code calcFrame} and {@code stepFrame}) on a worker thread while the rendering
+     * thread draws the frame before it, so that a frame takes about as long as the slower of the two rather than both
+     * of them together. Each {@code GlooBatch} keeps two packed frames to make this possible.
+     * <p>
+     * The price is one frame of latency: what is on screen is always one update behind the application's state.
+     *
+     * @param pipelined true to prepare each frame while the previous one is drawn
+     * @see GlooCore#prepareFrame()
+     * */
+    public void setPipelined(boolean pipelined){
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * @return whether the game loop prepares the next frame while the current one is drawn
+     * @see #setPipelined(boolean)
+     * */
+    public boolean isPipelined(){
+        return pipelined;
+    }
+
     /**
      * Spins off a new GlooApplication to run independently of a previously existing one in a new thread, given a name
      * and a setup {@code Consumer}. The thread cleans itself up when the {@code GlooApplication} has finished running.
@@ -5,9 +5,6 @@ import GlooKit.GlooAPI.GlooFontFamily;
 import GlooKit.Utils.Matrix;
 import org.lwjgl.opengl.*;
 
-import java.awt.*;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -23,6 +20,7 @@ public class TextBatch extends GlooBatch {
 
     private Map<String, Integer> handles;
     private List<GlooFontFamily> fontFamilies;
+    private boolean distanceFields; // whether fonts added from now on are baked as signed distance fields
 
     private int projMatrixLocation;
 
@@ -33,12 +31,34 @@ public class TextBatch extends GlooBatch {
         fontFamilies = new ArrayList<>();
         handles = new HashMap<>();
 
+        atlas.setSingleChannel(true); // the atlas only ever holds glyphs, which are coverage alone
+
         describeShaders("src/GlooKit/GlooShaders/", "quadVertex.glsl", "quadFragment.glsl", null);
-        describeVertices(new int[] {2, 4, 2}, "in_Position", "in_Color", "in_TextureCoord");
+        describeVertices(new int[] {2, 4, 3}, "in_Position", "in_Color", "in_TextureCoord"); // S, T and the page
         projMatrixLocation = describeUniform("projectionMatrix");
 
     }
 
+    /**
+     * Chooses whether the fonts of this batch are baked once as signed distance fields and scaled to their size by the
+     * shader, rather than rasterized at their size. Must be chosen before any font is added
+     * @see GlooFontFamily#isDistanceField()
+     * */
+    public void setDistanceFields(boolean distanceFields){
+        if(!fontFamilies.isEmpty()){
+            new Exception("ERROR: Distance fields must be chosen before any font is added to the TextBatch").printStackTrace();
+            return;
+        }
+        this.distanceFields = distanceFields;
+        atlas.setMagFilter(distanceFields ? GL11.GL_LINEAR : GL11.GL_NEAREST); // the edge is found between pixels
+        describeShaders("src/GlooKit/GlooShaders/", "quadVertex.glsl", distanceFields ? "distanceFieldFragment.glsl" : "quadFragment.glsl", null);
+
+    }
+    public boolean isDistanceFields(){
+        return distanceFields;
+
+    }
+
     public DefaultVertex createVertex(){
         return new DefaultVertex();
 
@@ -49,9 +69,8 @@ public class TextBatch extends GlooBatch {
 //        // enable depth testing
         // enable depth testing
         GL11.glDisable(GL11.GL_DEPTH_TEST);
-        // tell the shader to enable blending
-        GL11.glEnable(GL11.GL_BLEND);
-        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        // tell the shader to enable blending (to suit the atlas, which may be premultiplied)
+        enableBlending();
         // send the projection matrix
         assignUniform(FLOAT_MAT4x4, projMatrixLocation, panel.toFloatBuffer());
 
@@ -95,23 +114,20 @@ public class TextBatch extends GlooBatch {
         } else {
             /* This is not a directory of files, but a file itself */
 
-            // Figure out the name of the font
+            // Figure out the name of the font (from its font cache, if it has one, so the font need not be opened)
             try {
-                InputStream in = new FileInputStream(filePath);
-                Font awtFont = Font.createFont(Font.TRUETYPE_FONT, in);
-
-                String key = awtFont.getFamily();
+                String key = GlooFontFamily.familyName(filePath);
                 int handle;
 
                 /* Check to see if a font of this fontFamily has already been added */
                 if (handles.get(key) != null) {
                     // if one already has been added, get that font family and add a new font to it
                     handle = handles.get(key);
-                    fontFamilies.get(handle).addFont(awtFont, set);
+                    fontFamilies.get(handle).addFont(filePath, set);
                     return handle;
                 } else {
                     // if none exists, make a new font family and add the key to the map
-                    fontFamilies.add(new GlooFontFamily(atlas, size * app().pointSize, key, filePath, set));
+                    fontFamilies.add(new GlooFontFamily(atlas, size * app().pointSize, key, filePath, set, distanceFields));
                     handle = fontFamilies.size()-1;
                     handles.put(key, handle);
                     return handle;
@@ -18,21 +18,22 @@ public class Shaders {
     private final static List<BiConsumer<Integer, IntBuffer>> intBufferUniforms = constructIntBufferUniforms();
     private final static List<BiConsumer<Integer, FloatBuffer>> floatBufferUniforms = constructFloatBufferUniforms();
 
-    public static int loadVertexShader(String filename) {
-        return loadShader(filename, GL20.GL_VERTEX_SHADER);
+    public static int loadVertexShader(String filename, String... defines) {
+        return loadShader(filename, GL20.GL_VERTEX_SHADER, defines);
 
     }
-    public static int loadFragmentShader(String filename) {
-        return loadShader(filename, GL20.GL_FRAGMENT_SHADER);
+    public static int loadFragmentShader(String filename, String... defines) {
+        return loadShader(filename, GL20.GL_FRAGMENT_SHADER, defines);
 
     }
-    public static int loadGeometryShader(String filename) {
-        return loadShader(filename, GL32.GL_GEOMETRY_SHADER);
+    public static int loadGeometryShader(String filename, String... defines) {
+        return loadShader(filename, GL32.GL_GEOMETRY_SHADER, defines);
 
     }
 
     // takes the file of the shader and the type of shader and returns an ID
-    private static int loadShader(String filename, int type) {
+    // each of the defines is #defined right after the #version line, so one file can be compiled into several variants
+    private static int loadShader(String filename, int type, String... defines) {
         StringBuilder shaderSource = new StringBuilder();
         int shaderID;
 
@@ -41,6 +42,11 @@ public class Shaders {
             String line;
             while ((line = reader.readLine()) != null) {
                 shaderSource.append(line).append("\n");
+                if (line.trim().startsWith("#version")) {
+                    for (String define : defines) {
+                        shaderSource.append("#define ").append(define).append("\n");
+                    }
+                }
             }
             reader.close();
         } catch (IOException e) {
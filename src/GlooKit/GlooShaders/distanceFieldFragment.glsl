@@ -0,0 +1,38 @@
+#version 330 core
+
+// Draws glyphs baked as signed distance fields (see GlooFontFamily#isDistanceField): the alpha of the texture is the
+// distance to the edge of the glyph, 0.5 on the edge itself, so the edge is found between pixels at any size
+
+// PAGED is defined when the batch draws from a paged TextureAtlas (a texture array, with the page as the layer)
+#ifdef PAGED
+uniform sampler2DArray texture_diffuse;
+#else
+uniform sampler2D texture_diffuse;
+#endif
+
+in vec4 pass_Color;
+in vec3 pass_TextureCoord;
+
+out vec4 out_Color;
+
+void main() {
+#ifdef PAGED
+    float distance = texture(texture_diffuse, pass_TextureCoord).a;
+#else
+    float distance = texture(texture_diffuse, pass_TextureCoord.xy).a;
+#endif
+    // antialias across about a pixel on screen, however large or small the glyph is drawn
+    float edge = max(fwidth(distance) * 0.5, 1e-4);
+    float coverage = smoothstep(0.5 - edge, 0.5 + edge, distance);
+
+    out_Color = vec4(pass_Color.rgb, pass_Color.a * coverage);
+#ifdef PREMULTIPLIED
+    // PREMULTIPLIED is defined when the atlas is premultiplied (see TextureAtlas#setPremultiplied), so the color is too
+    out_Color.rgb *= out_Color.a;
+#endif
+
+    // This discards fragments if they are basically entirely transparent
+    if (out_Color.a < 0.02) {
+        discard;
+    }
+}
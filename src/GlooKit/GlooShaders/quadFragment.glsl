@@ -1,16 +1,29 @@
 #version 330 core
 
+// PAGED is defined when the batch draws from a paged TextureAtlas (a texture array, with the page as the layer)
+#ifdef PAGED
+uniform sampler2DArray texture_diffuse;
+#else
 uniform sampler2D texture_diffuse;
+#endif
 
 in vec4 pass_Color;
-in vec2 pass_TextureCoord;
+in vec3 pass_TextureCoord;
 
 out vec4 out_Color;
 
 void main() {
     out_Color = pass_Color;
+#ifdef PREMULTIPLIED
+    // PREMULTIPLIED is defined when the atlas is premultiplied (see TextureAtlas#setPremultiplied), so the color is too
+    out_Color.rgb *= out_Color.a;
+#endif
     // multiply color with texture color
+#ifdef PAGED
     out_Color *= texture(texture_diffuse, pass_TextureCoord);
+#else
+    out_Color *= texture(texture_diffuse, pass_TextureCoord.xy);
+#endif
     // this requires the quad to have a texture
 
 
@@ -2,15 +2,25 @@
 
 uniform mat4 projectionMatrix;
 
+// ORDERED is defined when the batch draws opaque objects in a pass of their own (see GlooBatch#setOpaquePass)
+#ifdef ORDERED
+uniform vec2 drawOrder; // the first vertex of the frame, and one over the number of vertices in it
+#endif
+
 in vec2 in_Position;
 in vec4 in_Color;
-in vec2 in_TextureCoord;
+in vec3 in_TextureCoord; // the page of a paged atlas rides along as the third coordinate
 
 out vec4 pass_Color;
-out vec2 pass_TextureCoord;
+out vec3 pass_TextureCoord;
 
 void main(void) {
     gl_Position = projectionMatrix * vec4(in_Position, 0, 1);
+#ifdef ORDERED
+    // objects are packed in draw order, and the first drawn is on top, so the depth goes with the vertex (from -1 up
+    // to 0, behind which batches without an order still draw at 0, as always)
+    gl_Position.z = -1 + (gl_VertexID - drawOrder.x) * drawOrder.y;
+#endif
 
     pass_Color = in_Color;
     pass_TextureCoord = in_TextureCoord;